@@ -0,0 +1,170 @@
+package sudokiscte;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks of the paths games spend their time in, for each board size: plays
+// and validation on the board, random plays, saving and loading, and drawing.
+// Run with the GC profiler (-prof gc) for the bytes allocated per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BoardBenchmarks {
+	@Param({ "9", "16", "25" })
+	public int size;
+
+	private int[] blanks;
+	private int cellResolution;
+
+	private SudokuBoard played;
+	private int plays;
+	private SudokuBoard validated;
+	private SudokuBoard random;
+	private int position;
+
+	private Path directory;
+	private Sudoku game;
+	private String saved;
+	private Sudoku loaded;
+
+	private ColorImage img;
+
+	@Setup
+	public void setUp() throws IOException {
+		int sectorSize = (int) Math.round(Math.sqrt(size));
+		if (!PuzzleReader.validSize(size))
+			throw new IllegalArgumentException("Tamanho de tabuleiro inválido: " + size);
+
+		// Half the positions blank, always the same puzzle for a size
+		int[][] puzzle = new SudokuGenerator(sectorSize, new Random(size)).generate(size * size / 2).clues;
+		blanks = blanks(puzzle);
+		cellResolution = SudokuAux.cellResolution(size);
+
+		played = board(puzzle);
+
+		// Every blank position filled, some of them with repeated values, so that
+		// validation has conflicts to find
+		validated = board(puzzle);
+		for (int k = 0; k < blanks.length; k++)
+			validated.play(blanks[k] / size, blanks[k] % size, k % size + 1);
+
+		random = board(puzzle);
+		random.setRandomSeed(size);
+
+		directory = Files.createTempDirectory("sudokiscte-bench");
+		game = Sudoku.headless(puzzle, 0);
+		for (int k = 0; k < blanks.length / 2; k++)
+			game.getBoard().play(blanks[k] / size, blanks[k] % size, k % size + 1);
+		saved = directory.resolve("game" + size).toString();
+		game.save(saved);
+		loaded = Sudoku.headless(puzzle, 0);
+
+		img = SudokuRenderer.emptyBoardImage(size);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (File file : directory.toFile().listFiles())
+			file.delete();
+		Files.delete(directory);
+	}
+
+	private static SudokuBoard board(int[][] puzzle) {
+		return new SudokuBoard(puzzle, 0, 1);
+	}
+
+	private static int[] blanks(int[][] puzzle) {
+		int size = puzzle.length;
+		int count = 0;
+		int[] blanks = new int[size * size];
+		for (int cell = 0; cell < size * size; cell++)
+			if (puzzle[cell / size][cell % size] == 0)
+				blanks[count++] = cell;
+
+		return Arrays.copyOf(blanks, count);
+	}
+
+	private int nextPosition() {
+		position = position == size * size - 1 ? 0 : position + 1;
+		return position;
+	}
+
+	@Benchmark
+	public int play() {
+		// Reset now and then, so that the history stays short
+		if (plays == 1 << 12) {
+			played.reset();
+			plays = 0;
+		}
+		int cell = blanks[plays % blanks.length];
+		played.play(cell / size, cell % size, plays++ % size + 1);
+		return played.getValue(cell / size, cell % size);
+	}
+
+	@Benchmark
+	public boolean validatePosition() {
+		int cell = nextPosition();
+		return validated.validatePosition(cell / size, cell % size);
+	}
+
+	@Benchmark
+	public boolean isGameFinished() {
+		return validated.isGameFinished();
+	}
+
+	@Benchmark
+	public int randomPlay() {
+		if (!random.randomPlay())
+			random.reset();
+		return random.lastMove();
+	}
+
+	@Benchmark
+	public long save() {
+		game.save(saved);
+		return game.getBoard().getHash();
+	}
+
+	@Benchmark
+	public int loadSavedGame() {
+		loaded.loadSavedGame(saved + ".sudgame");
+		return loaded.getBoard().getValue(0, 0);
+	}
+
+	@Benchmark
+	public int paintCell() {
+		int cell = nextPosition();
+		img.paintCell(cell / size, cell % size, cellResolution, Color.SOLARIZED_BACKGROUND);
+		return img.getRgb(1, 1);
+	}
+
+	@Benchmark
+	public int drawText() {
+		int cell = nextPosition();
+		img.drawText((cell % size) * cellResolution + cellResolution / 4,
+		    (cell / size) * cellResolution - cellResolution / 12, Integer.toString(cell % size + 1), cellResolution,
+		    Color.SOLARIZED_FONT);
+		return img.getRgb(1, 1);
+	}
+}
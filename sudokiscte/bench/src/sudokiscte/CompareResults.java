@@ -0,0 +1,96 @@
+package sudokiscte;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compares two runs of the benchmarks, saved by JMH as CSV (-rf csv -rff file):
+// prints the change of each score from the baseline, and exits with 1 if any
+// time grew by more than REGRESSION_THRESHOLD. Secondary scores (eg. those of
+// -prof gc) are printed, but are not regressions.
+//
+// Usage: CompareResults <baseline.csv> <results.csv>
+public class CompareResults {
+	static final double REGRESSION_THRESHOLD = 0.20;
+
+	// Score of each benchmark (name and parameters)
+	static Map<String, Double> load(String fileName) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8);
+		if (lines.isEmpty())
+			throw new IllegalArgumentException("O ficheiro " + fileName + " está vazio");
+
+		List<String> header = fields(lines.get(0));
+		int score = header.indexOf("Score");
+		if (score < 0)
+			throw new IllegalArgumentException("O ficheiro " + fileName + " não tem resultados do JMH em CSV");
+
+		Map<String, Double> scores = new LinkedHashMap<>();
+		for (String line : lines.subList(1, lines.size())) {
+			List<String> fields = fields(line);
+			StringBuilder key = new StringBuilder(fields.get(0));
+			for (int k = 0; k < header.size(); k++)
+				if (header.get(k).startsWith("Param: ") && k < fields.size() && !fields.get(k).isEmpty())
+					key.append(' ').append(header.get(k).substring(7)).append('=').append(fields.get(k));
+
+			scores.put(key.toString(), Double.parseDouble(fields.get(score)));
+		}
+
+		return scores;
+	}
+
+	// Fields of a line, some of them in quotes
+	private static List<String> fields(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		for (int k = 0; k < line.length(); k++) {
+			char c = line.charAt(k);
+			if (c == '"')
+				quoted = !quoted;
+			else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else
+				field.append(c);
+		}
+		fields.add(field.toString());
+
+		return fields;
+	}
+
+	// Prints the changes, returning how many are regressions
+	static int compare(Map<String, Double> baseline, Map<String, Double> results) {
+		int regressions = 0;
+		for (Map.Entry<String, Double> result : results.entrySet()) {
+			Double before = baseline.get(result.getKey());
+			if (before == null || before == 0)
+				continue;
+
+			double change = result.getValue() / before - 1;
+			boolean regression = !result.getKey().contains(":") && change > REGRESSION_THRESHOLD;
+			if (regression)
+				regressions++;
+
+			System.out.println(String.format("%-72s %+7.1f%%%s", result.getKey(), 100 * change,
+			    regression ? "  REGRESSÃO" : ""));
+		}
+
+		return regressions;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Utilização: CompareResults <base.csv> <resultados.csv>");
+			return;
+		}
+
+		if (compare(load(args[0]), load(args[1])) > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,66 @@
+package sudokiscte;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Reading and writing files of the image of a board, which does not depend on
+// its size
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ImageFileBenchmarks {
+	@Param({ "png", "gif" })
+	public String format;
+
+	private Path directory;
+	private String path;
+	private ColorImage img;
+
+	@Setup
+	public void setUp() throws IOException {
+		img = SudokuRenderer.emptyBoardImage(SudokuAux.BOARD_SIZE);
+		for (int k = 0; k < SudokuAux.BOARD_SIZE; k++)
+			SudokuAux.writeToCellWithFontColor(img, k, k, Integer.toString(k + 1), Color.SOLARIZED_FONT);
+
+		directory = Files.createTempDirectory("sudokiscte-bench");
+		path = directory.resolve("board." + format).toString();
+		ImageUtil.writeImage(img, path, format);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (File file : directory.toFile().listFiles())
+			file.delete();
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	public long writeImage() {
+		ImageUtil.writeImage(img, path, format);
+		return new File(path).length();
+	}
+
+	@Benchmark
+	public int readColorImage() {
+		return ImageUtil.readColorImage(path)[0][0];
+	}
+}
@@ -0,0 +1,467 @@
+package sudokiscte;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+
+// Write-behind saving of games: every change to the history of a game (moves
+// played, undone and redone, resets) is appended to a journal of its own by a
+// writer thread shared by every game, so that plays never wait for the disk. The
+// writer sleeps until a game has something to write, then commits in groups: it
+// writes what every game appended since its last commit, then forces each file
+// it wrote to the disk; what is appended meanwhile goes in the next group. Now
+// and then (and as soon as a game is replaced, eg. by loading a saved game) a
+// journal is compacted into a snapshot of the game, and starts again empty. A
+// game that could not be written is saved whole at its next change.
+//
+// Files of each game, in the directory:
+// <game>.snapshot   generation (8 bytes) | the game in the .sudgame format
+// <game>.journal    generation (8 bytes) | one record (4 bytes) per change
+// A record is the change (its HistoryChange ordinal) in the top byte, and the
+// move (see MoveJournal) in the others. A journal of another generation than the
+// snapshot is older than it, and ignored: the snapshot has all its changes
+class Autosave implements Closeable {
+	static final int COMPACT_AFTER_RECORDS = 4096;
+
+	static final String SNAPSHOT_SUFFIX = ".snapshot";
+	static final String JOURNAL_SUFFIX = ".journal";
+	static final int HEADER_BYTES = 8;
+	static final int RECORD_BYTES = 4;
+
+	private static final int MOVE_MASK = (1 << 24) - 1;
+
+	private final Path directory;
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	// Games with something to write, and callers waiting for the next commit
+	private final Queue<Game> dirty = new ConcurrentLinkedQueue<>();
+	private final Queue<CompletableFuture<Void>> waiting = new ConcurrentLinkedQueue<>();
+
+	// Error of the last commit, if it failed, and who is told of each failed
+	// commit (on the writer thread)
+	private volatile IOException failure;
+	private final Consumer<? super IOException> failureListener;
+
+	// Games whose journal the writer has open
+	private final List<Game> open = new ArrayList<>();
+
+	Autosave(Path directory) throws IOException {
+		this(directory, error -> {
+		});
+	}
+
+	// Failed commits are counted (SudokuMetrics) and handed to the listener; the
+	// games they failed to write are saved whole at their next change
+	Autosave(Path directory, Consumer<? super IOException> failureListener) throws IOException {
+		this.failureListener = failureListener;
+		this.directory = Files.createDirectories(directory);
+		this.writer = new Thread(this::writeLoop, "autosave " + directory);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	// Starts saving the game, from its current state; should be called on the
+	// thread that plays it (a board is used by one thread at a time)
+	Game attach(long id, SudokuBoard board) {
+		Game game = new Game(id);
+		board.addListener(game);
+		game.checkpoint(board);
+
+		return game;
+	}
+
+	// Games saved in the directory
+	List<Long> savedGames() throws IOException {
+		List<Long> ids = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				ids.add(Long.parseLong(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length())));
+			}
+		}
+
+		return ids;
+	}
+
+	// The game as it was at the last commit: its snapshot, with the changes of its
+	// journal made again. A journal cut short by a crash is read up to its last
+	// whole record, and changes that cannot be made (a damaged journal) end it
+	SudokuBoard recover(long id) throws IOException {
+		byte[] snapshot;
+		try {
+			snapshot = Files.readAllBytes(snapshotPath(id));
+		} catch (NoSuchFileException e) {
+			throw new IllegalArgumentException("O jogo " + id + " não foi guardado");
+		}
+
+		ByteBuffer in = ByteBuffer.wrap(snapshot);
+		long generation = in.getLong();
+		SudokuBoard board = SavedGame.decode(in).toBoard();
+
+		Path journalPath = journalPath(id);
+		if (!Files.exists(journalPath))
+			return board;
+
+		ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+		if (journal.remaining() < HEADER_BYTES || journal.getLong() != generation)
+			return board;
+
+		while (journal.remaining() >= RECORD_BYTES)
+			if (!replay(board, journal.getInt()))
+				break;
+
+		return board;
+	}
+
+	private static boolean replay(SudokuBoard board, int record) {
+		SudokuListener.HistoryChange[] changes = SudokuListener.HistoryChange.values();
+		int change = record >>> 24;
+		int move = record & MOVE_MASK;
+		if (change >= changes.length)
+			return false;
+
+		switch (changes[change]) {
+		case PLAY:
+			int line = MoveJournal.line(move);
+			int column = MoveJournal.column(move);
+			return line < board.getSize() && column < board.getSize()
+			    && board.getValue(line, column) == MoveJournal.oldValue(move)
+			    && board.play(line, column, MoveJournal.newValue(move));
+		case UNDO:
+			if (board.lastMove() != move)
+				return false;
+			board.undo();
+			return true;
+		case REDO:
+			return board.redo() && board.lastMove() == move;
+		case RESET:
+			board.reset();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// Waits until everything appended so far is on the disk
+	void sync() throws IOException, InterruptedException {
+		CompletableFuture<Void> committed = new CompletableFuture<>();
+		waiting.add(committed);
+		LockSupport.unpark(writer);
+
+		try {
+			committed.get();
+		} catch (ExecutionException e) {
+			throw (IOException) e.getCause();
+		}
+	}
+
+	// Commits what is left, then stops the writer
+	@Override
+	public void close() throws IOException {
+		running = false;
+		LockSupport.unpark(writer);
+
+		try {
+			writer.join(TimeUnit.MINUTES.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	// Error of the last commit that wrote something, or of a later one that failed;
+	// null when it succeeded
+	IOException lastFailure() {
+		return failure;
+	}
+
+	private Path snapshotPath(long id) {
+		return directory.resolve(id + SNAPSHOT_SUFFIX);
+	}
+
+	private Path journalPath(long id) {
+		return directory.resolve(id + JOURNAL_SUFFIX);
+	}
+
+	// A game being saved, which listens to its board (and keeps no reference to
+	// it, so that the board can be replaced, eg. parked and loaded back from a
+	// BoardStore). Changes are handed over to the writer in a buffer that the two
+	// swap, under the lock of the game
+	final class Game implements SudokuListener {
+		final long id;
+
+		// Used only by the thread that plays the game
+		private int records = 0; // since the last snapshot
+
+		// Handed over to the writer: a snapshot, if one was taken, and the records
+		// that follow it; whether the game is queued to be written, whether it was
+		// detached, and whether its files are then to be deleted
+		private int[] pending = new int[64];
+		private int pendingCount = 0;
+		private byte[] pendingSnapshot;
+		private boolean queued = false;
+		private boolean detached = false;
+		private boolean discarded = false;
+
+		// Set by the writer when it could not write the game
+		private volatile boolean stale = false;
+
+		// Used only by the writer
+		private int[] writing = new int[64];
+		private FileChannel journal;
+		private long generation = -1;
+
+		private Game(long id) {
+			this.id = id;
+		}
+
+		@Override
+		public void historyChanged(SudokuBoard board, HistoryChange change, int move) {
+			if (change == HistoryChange.REPLACE || stale || records >= COMPACT_AFTER_RECORDS) {
+				checkpoint(board);
+				return;
+			}
+
+			records++;
+			append(change.ordinal() << 24 | move & MOVE_MASK);
+		}
+
+		// Saves a snapshot of the game as it is now, in place of the changes
+		// before it
+		void checkpoint(SudokuBoard board) {
+			byte[] snapshot = SavedGame.of(board).encode();
+			records = 0;
+			stale = false;
+
+			synchronized (this) {
+				pendingSnapshot = snapshot;
+				pendingCount = 0;
+				enqueue();
+			}
+		}
+
+		private synchronized void append(int record) {
+			if (pendingCount == pending.length)
+				pending = Arrays.copyOf(pending, 2 * pending.length);
+			pending[pendingCount++] = record;
+			enqueue();
+		}
+
+		private void enqueue() {
+			if (!queued && !detached) {
+				queued = true;
+				dirty.add(this);
+				LockSupport.unpark(writer);
+			}
+		}
+
+		// Stops saving the game; with discard, its files are deleted (eg. when it
+		// ends), otherwise they are kept up to date with what was appended
+		void detach(SudokuBoard board, boolean discard) {
+			board.removeListener(this);
+
+			synchronized (this) {
+				detached = true;
+				discarded = discard;
+				if (!queued) {
+					queued = true;
+					dirty.add(this);
+				}
+			}
+			LockSupport.unpark(writer);
+		}
+
+		// After the game could not be written, its journal is opened again, and
+		// the game saved whole at its next change
+		private void failed() {
+			stale = true;
+			if (journal != null) {
+				try {
+					journal.close();
+				} catch (IOException e) {
+					// Opened again anyway
+				}
+				journal = null;
+				open.remove(this);
+			}
+		}
+
+		// Writes what was handed over, returning the journal if anything was
+		// written to it (to be forced), or null
+		private FileChannel write() throws IOException {
+			byte[] snapshot;
+			int count;
+			boolean closing;
+			boolean discard;
+			synchronized (this) {
+				snapshot = pendingSnapshot;
+				count = pendingCount;
+				int[] records = pending;
+				pending = writing;
+				writing = records;
+				pendingSnapshot = null;
+				pendingCount = 0;
+				queued = false;
+				closing = detached;
+				discard = discarded;
+			}
+
+			if (discard) {
+				if (journal != null) {
+					journal.close();
+					open.remove(this);
+				}
+				Files.deleteIfExists(journalPath(id));
+				Files.deleteIfExists(snapshotPath(id));
+				return null;
+			}
+
+			if (journal == null)
+				open();
+			if (snapshot != null)
+				compact(snapshot);
+
+			if (count > 0) {
+				ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_BYTES);
+				buffer.asIntBuffer().put(writing, 0, count);
+				while (buffer.hasRemaining())
+					journal.write(buffer, journal.size());
+			}
+
+			FileChannel written = journal;
+			if (closing) {
+				journal.force(false);
+				journal.close();
+				open.remove(this);
+				return null;
+			}
+
+			return snapshot != null || count > 0 ? written : null;
+		}
+
+		private void open() throws IOException {
+			journal = FileChannel.open(journalPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ,
+			    StandardOpenOption.WRITE);
+			open.add(this);
+
+			generation = 0;
+			try (FileChannel snapshot = FileChannel.open(snapshotPath(id), StandardOpenOption.READ)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				if (snapshot.read(header, 0) == HEADER_BYTES)
+					generation = header.getLong(0);
+			} catch (NoSuchFileException e) {
+				// First save of the game
+			}
+		}
+
+		// The snapshot replaces the previous one (on the disk before the rename),
+		// and the journal starts over, for the new generation
+		private void compact(byte[] snapshot) throws IOException {
+			generation++;
+
+			Path temporary = directory.resolve(id + SNAPSHOT_SUFFIX + ".tmp");
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+			    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + snapshot.length);
+				buffer.putLong(generation).put(snapshot).flip();
+				while (buffer.hasRemaining())
+					out.write(buffer);
+				out.force(false);
+			}
+			Files.move(temporary, snapshotPath(id), StandardCopyOption.ATOMIC_MOVE,
+			    StandardCopyOption.REPLACE_EXISTING);
+
+			journal.truncate(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putLong(0, generation);
+			journal.write(header, 0);
+		}
+	}
+
+	// Commits a group at a time: the games queued since the last commit are
+	// written, then their journals forced, then the callers of sync are told. A
+	// failed commit is reported (and the games it failed to write saved whole
+	// later); the writer goes on with the next
+	private void writeLoop() {
+		List<Game> written = new ArrayList<>();
+		List<CompletableFuture<Void>> committed = new ArrayList<>();
+
+		while (true) {
+			while (running && dirty.isEmpty() && waiting.isEmpty())
+				LockSupport.park(this);
+			boolean stopping = !running;
+
+			for (CompletableFuture<Void> waiter; (waiter = waiting.poll()) != null;)
+				committed.add(waiter);
+
+			long start = SudokuMetrics.start();
+			IOException error = null;
+			for (Game game; (game = dirty.poll()) != null;)
+				try {
+					if (game.write() != null)
+						written.add(game);
+				} catch (IOException e) {
+					error = e;
+					game.failed();
+				}
+
+			for (Game game : written)
+				try {
+					game.journal.force(false);
+				} catch (IOException e) {
+					error = e;
+					game.failed();
+				}
+
+			// An error stands until something is written again
+			if (error != null) {
+				failure = error;
+				SudokuMetrics.failed(SudokuMetrics.Operation.SAVE);
+				failureListener.accept(error);
+			} else if (!written.isEmpty()) {
+				failure = null;
+				SudokuMetrics.stop(SudokuMetrics.Operation.SAVE, start);
+			}
+
+			IOException failed = failure;
+			for (CompletableFuture<Void> waiter : committed)
+				if (failed != null)
+					waiter.completeExceptionally(failed);
+				else
+					waiter.complete(null);
+
+			written.clear();
+			committed.clear();
+
+			if (stopping) {
+				for (Game game : open)
+					try {
+						game.journal.close();
+					} catch (IOException e) {
+						// Everything was forced already
+					}
+				return;
+			}
+		}
+	}
+}
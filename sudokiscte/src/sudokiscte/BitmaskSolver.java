@@ -0,0 +1,316 @@
+package sudokiscte;
+
+import java.util.Random;
+
+// Backtracking solver over bitmask candidate sets. Before each guess it places
+// every naked single (positions with one candidate left) and hidden single
+// (values with one position left in a line, column or sector), then guesses on
+// the blank position with the fewest candidates
+class BitmaskSolver implements SudokuSolver {
+	// When set, candidates are tried in random order (eg. to generate random grids)
+	private final Random random;
+
+	BitmaskSolver() {
+		this(null);
+	}
+
+	BitmaskSolver(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public Result search(int[][] board, long limit, SolutionVisitor visitor) {
+		State state = State.of(BoardGeometry.ofBoard(board), board);
+		Search search = new Search(limit, visitor, random);
+
+		if (state != null)
+			search.run(state);
+
+		return new Result(search.first, search.solutions, search.nodes);
+	}
+
+	// Depth-first search from a state; subclasses can stop it from outside and
+	// decide what to do with the solutions
+	static class Search {
+		final long limit;
+		final SolutionVisitor visitor;
+		final Random random;
+
+		int[][] first;
+		long solutions;
+		long nodes;
+
+		Search(long limit, SolutionVisitor visitor, Random random) {
+			this.limit = limit;
+			this.visitor = visitor;
+			this.random = random;
+		}
+
+		// Returns true when the search has to stop
+		boolean run(State state) {
+			if (cancelled())
+				return true;
+
+			nodes++;
+			int mark = state.trailSize;
+
+			if (!state.propagate()) {
+				state.undoTo(mark);
+				return false;
+			}
+
+			if (state.blanks == 0) {
+				boolean stop = found(state);
+				state.undoTo(mark);
+				return stop;
+			}
+
+			int cell = state.selectCell();
+			int guessMark = state.trailSize;
+			int[] values = state.candidateValues(cell, random);
+
+			for (int k = 0; k < values.length; k++) {
+				state.place(cell, values[k]);
+				boolean stop = run(state);
+				state.undoTo(guessMark);
+
+				if (stop) {
+					state.undoTo(mark);
+					return true;
+				}
+			}
+
+			state.undoTo(mark);
+			return false;
+		}
+
+		boolean cancelled() {
+			return false;
+		}
+
+		// Returns true when the search has to stop
+		boolean found(State state) {
+			solutions++;
+			if (first == null)
+				first = state.toBoard();
+
+			if (visitor != null && !visitor.visit(state.toBoard()))
+				return true;
+
+			return solutions >= limit;
+		}
+	}
+
+	// Board being solved, with the values used in each line, column and sector and
+	// a trail of the placements made, so that guesses can be undone
+	static class State {
+		final BoardGeometry geometry;
+		final int[] values;
+		final long[] lineUsed;
+		final long[] columnUsed;
+		final long[] sectorUsed;
+		int blanks;
+
+		final int[] trail;
+		int trailSize;
+
+		private State(BoardGeometry geometry) {
+			this.geometry = geometry;
+			this.values = new int[geometry.cells];
+			this.lineUsed = new long[geometry.size];
+			this.columnUsed = new long[geometry.size];
+			this.sectorUsed = new long[geometry.size];
+			this.blanks = geometry.cells;
+			this.trail = new int[geometry.cells];
+		}
+
+		// The state of a board, or null when its values already repeat in some line,
+		// column or sector
+		static State of(BoardGeometry geometry, int[][] board) {
+			State state = new State(geometry);
+			int[] values = geometry.flatten(board);
+
+			for (int cell = 0; cell < geometry.cells; cell++) {
+				int value = values[cell];
+				if (value == 0)
+					continue;
+
+				if ((state.candidates(cell) & (1L << value)) == 0)
+					return null;
+
+				state.place(cell, value);
+			}
+
+			// Given values are never undone
+			state.trailSize = 0;
+			return state;
+		}
+
+		State copy() {
+			State copy = new State(geometry);
+			System.arraycopy(values, 0, copy.values, 0, values.length);
+			System.arraycopy(lineUsed, 0, copy.lineUsed, 0, lineUsed.length);
+			System.arraycopy(columnUsed, 0, copy.columnUsed, 0, columnUsed.length);
+			System.arraycopy(sectorUsed, 0, copy.sectorUsed, 0, sectorUsed.length);
+			copy.blanks = blanks;
+			return copy;
+		}
+
+		long candidates(int cell) {
+			return geometry.allValues & ~(lineUsed[geometry.lineOf[cell]] | columnUsed[geometry.columnOf[cell]]
+			    | sectorUsed[geometry.sectorOf[cell]]);
+		}
+
+		void place(int cell, int value) {
+			long bit = 1L << value;
+			values[cell] = value;
+			lineUsed[geometry.lineOf[cell]] |= bit;
+			columnUsed[geometry.columnOf[cell]] |= bit;
+			sectorUsed[geometry.sectorOf[cell]] |= bit;
+			blanks--;
+			trail[trailSize++] = cell;
+		}
+
+		void undoTo(int mark) {
+			while (trailSize > mark) {
+				int cell = trail[--trailSize];
+				long bit = ~(1L << values[cell]);
+				values[cell] = 0;
+				lineUsed[geometry.lineOf[cell]] &= bit;
+				columnUsed[geometry.columnOf[cell]] &= bit;
+				sectorUsed[geometry.sectorOf[cell]] &= bit;
+				blanks++;
+			}
+		}
+
+		// Places naked and hidden singles until there are none left; returns false
+		// when some position or value runs out of options
+		boolean propagate() {
+			while (blanks > 0) {
+				int placed = placeNakedSingles();
+				if (placed < 0)
+					return false;
+				if (placed > 0)
+					continue;
+
+				placed = placeHiddenSingles();
+				if (placed < 0)
+					return false;
+				if (placed == 0)
+					break;
+			}
+
+			return true;
+		}
+
+		// Number of singles placed, or -1 on a contradiction
+		int placeNakedSingles() {
+			int placed = 0;
+
+			for (int cell = 0; cell < geometry.cells; cell++) {
+				if (values[cell] != 0)
+					continue;
+
+				long candidates = candidates(cell);
+				if (candidates == 0)
+					return -1;
+
+				if ((candidates & (candidates - 1)) == 0) {
+					place(cell, Long.numberOfTrailingZeros(candidates));
+					placed++;
+				}
+			}
+
+			return placed;
+		}
+
+		// Number of singles placed, or -1 on a contradiction
+		int placeHiddenSingles() {
+			int placed = 0;
+			int size = geometry.size;
+
+			for (int u = 0; u < geometry.units.length; u++) {
+				long used = u < size ? lineUsed[u] : u < 2 * size ? columnUsed[u - size] : sectorUsed[u - 2 * size];
+				if (used == geometry.allValues)
+					continue;
+
+				int[] unit = geometry.units[u];
+				long once = 0, twice = 0;
+
+				for (int k = 0; k < unit.length; k++) {
+					int cell = unit[k];
+					if (values[cell] == 0) {
+						long candidates = candidates(cell);
+						twice |= once & candidates;
+						once |= candidates;
+					}
+				}
+
+				if ((used | once) != geometry.allValues)
+					return -1;
+
+				long hidden = once & ~twice;
+				while (hidden != 0) {
+					long bit = hidden & -hidden;
+					hidden &= hidden - 1;
+
+					for (int k = 0; k < unit.length; k++) {
+						int cell = unit[k];
+						if (values[cell] == 0 && (candidates(cell) & bit) != 0) {
+							place(cell, Long.numberOfTrailingZeros(bit));
+							placed++;
+							break;
+						}
+					}
+				}
+			}
+
+			return placed;
+		}
+
+		// Blank position with the fewest candidates, or -1 if there is none
+		int selectCell() {
+			int best = -1;
+			int bestCount = Integer.MAX_VALUE;
+
+			for (int cell = 0; cell < geometry.cells; cell++) {
+				if (values[cell] != 0)
+					continue;
+
+				int count = Long.bitCount(candidates(cell));
+				if (count < bestCount) {
+					best = cell;
+					bestCount = count;
+					if (count <= 2)
+						break;
+				}
+			}
+
+			return best;
+		}
+
+		int[] candidateValues(int cell, Random random) {
+			long candidates = candidates(cell);
+			int[] result = new int[Long.bitCount(candidates)];
+
+			for (int k = 0; candidates != 0; k++) {
+				result[k] = Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1;
+			}
+
+			if (random != null)
+				for (int k = result.length - 1; k > 0; k--) {
+					int other = random.nextInt(k + 1);
+					int swap = result[k];
+					result[k] = result[other];
+					result[other] = swap;
+				}
+
+			return result;
+		}
+
+		int[][] toBoard() {
+			return geometry.toBoard(values);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package sudokiscte;
+
+// Precomputed layout of a board with a given sector size: positions are numbered
+// line after line (line * size + column), and the lines, columns and sectors are
+// the units in which every value must appear exactly once
+class BoardGeometry {
+	static final int MAX_SECTOR_SIZE = 7; // candidate sets are kept in a long
+
+	final int sectorSize;
+	final int size;
+	final int cells;
+
+	// Candidate set with every value from 1 to size (bit v stands for value v)
+	final long allValues;
+
+	final int[] lineOf;
+	final int[] columnOf;
+	final int[] sectorOf;
+
+	// Lines first, then columns, then sectors; each with the positions it holds
+	final int[][] units;
+
+	private static final BoardGeometry[] cache = new BoardGeometry[MAX_SECTOR_SIZE + 1];
+
+	static synchronized BoardGeometry of(int sectorSize) {
+		if (sectorSize < 1 || sectorSize > MAX_SECTOR_SIZE)
+			throw new IllegalArgumentException("Tamanho de setor não suportado: " + sectorSize);
+
+		if (cache[sectorSize] == null)
+			cache[sectorSize] = new BoardGeometry(sectorSize);
+
+		return cache[sectorSize];
+	}
+
+	// Geometry of a square board, deduced from its number of lines
+	static BoardGeometry ofBoard(int[][] board) {
+		int sectorSize = (int) Math.round(Math.sqrt(board.length));
+		if (sectorSize * sectorSize != board.length)
+			throw new IllegalArgumentException("O tabuleiro não tem dimensões válidas");
+
+		for (int i = 0; i < board.length; i++)
+			if (board[i].length != board.length)
+				throw new IllegalArgumentException("O tabuleiro não tem dimensões válidas");
+
+		return of(sectorSize);
+	}
+
+	private BoardGeometry(int sectorSize) {
+		this.sectorSize = sectorSize;
+		this.size = sectorSize * sectorSize;
+		this.cells = size * size;
+		this.allValues = ((1L << size) - 1) << 1;
+
+		lineOf = new int[cells];
+		columnOf = new int[cells];
+		sectorOf = new int[cells];
+		units = new int[3 * size][size];
+
+		int[] filled = new int[3 * size];
+		for (int cell = 0; cell < cells; cell++) {
+			int line = cell / size;
+			int column = cell % size;
+			int sector = (line / sectorSize) * sectorSize + column / sectorSize;
+
+			lineOf[cell] = line;
+			columnOf[cell] = column;
+			sectorOf[cell] = sector;
+
+			units[line][filled[line]++] = cell;
+			units[size + column][filled[size + column]++] = cell;
+			units[2 * size + sector][filled[2 * size + sector]++] = cell;
+		}
+	}
+
+	int cell(int line, int column) {
+		return line * size + column;
+	}
+
+	// Flattens a board into positions numbered line after line, checking its values
+	int[] flatten(int[][] board) {
+		int[] values = new int[cells];
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++) {
+				int value = board[i][j];
+				if (value < 0 || value > size)
+					throw new IllegalArgumentException("Valor inválido na linha " + i + ", coluna " + j + ": " + value);
+				values[cell(i, j)] = value;
+			}
+
+		return values;
+	}
+
+	int[][] toBoard(int[] values) {
+		int[][] board = new int[size][size];
+		for (int i = 0; i < size; i++)
+			System.arraycopy(values, i * size, board[i], 0, size);
+
+		return board;
+	}
+}
@@ -0,0 +1,131 @@
+package sudokiscte;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Immutable state of a board, packed into longs with as few bits per position
+// as its values need (4 for 9x9: 6 longs, where an int[][] takes 10 arrays).
+// Changing a position gives a new snapshot and leaves this one as it was, so
+// that speculative lines of play can branch from a common state
+final class BoardSnapshot {
+	final int sectorSize;
+	private final long[] words;
+
+	private BoardSnapshot(int sectorSize, long[] words) {
+		this.sectorSize = sectorSize;
+		this.words = words;
+	}
+
+	static BoardSnapshot empty(int sectorSize) {
+		return new BoardSnapshot(sectorSize, new long[wordCount(sectorSize)]);
+	}
+
+	static BoardSnapshot of(int[][] board) {
+		BoardGeometry geometry = BoardGeometry.ofBoard(board);
+		long[] words = new long[wordCount(geometry.sectorSize)];
+		int bits = valueBits(geometry.size);
+
+		for (int i = 0; i < geometry.size; i++)
+			for (int j = 0; j < geometry.size; j++)
+				set(words, bits, i * geometry.size + j, board[i][j]);
+
+		return new BoardSnapshot(geometry.sectorSize, words);
+	}
+
+	// Snapshot of packed values (as kept by SudokuBoard); the array is copied
+	static BoardSnapshot of(int sectorSize, long[] words) {
+		return new BoardSnapshot(sectorSize, words.clone());
+	}
+
+	// Snapshot of packed values kept in a buffer (eg. a slot of a BoardStore),
+	// wordCount longs from the offset
+	static BoardSnapshot readFrom(int sectorSize, ByteBuffer buffer, int offset) {
+		long[] words = new long[wordCount(sectorSize)];
+		for (int k = 0; k < words.length; k++)
+			words[k] = buffer.getLong(offset + k * Long.BYTES);
+
+		return new BoardSnapshot(sectorSize, words);
+	}
+
+	// Bits per position on boards with the given number of lines
+	static int valueBits(int size) {
+		return 32 - Integer.numberOfLeadingZeros(size);
+	}
+
+	// Values do not cross from a long to the next
+	static int wordCount(int sectorSize) {
+		int size = sectorSize * sectorSize;
+		int perWord = Long.SIZE / valueBits(size);
+		return (size * size + perWord - 1) / perWord;
+	}
+
+	static int get(long[] words, int valueBits, int cell) {
+		int perWord = Long.SIZE / valueBits;
+		int shift = (cell % perWord) * valueBits;
+		return (int) (words[cell / perWord] >>> shift) & ((1 << valueBits) - 1);
+	}
+
+	static void set(long[] words, int valueBits, int cell, int value) {
+		int perWord = Long.SIZE / valueBits;
+		int shift = (cell % perWord) * valueBits;
+		long mask = ((1L << valueBits) - 1) << shift;
+		words[cell / perWord] = (words[cell / perWord] & ~mask) | ((long) value << shift);
+	}
+
+	int getSize() {
+		return sectorSize * sectorSize;
+	}
+
+	int get(int line, int column) {
+		int size = getSize();
+		return get(words, valueBits(size), line * size + column);
+	}
+
+	// A snapshot that differs from this one in a single position
+	BoardSnapshot with(int line, int column, int value) {
+		int size = getSize();
+		if (!SudokuAux.validElement(value, size))
+			throw new IllegalArgumentException("Valor inválido: " + value);
+
+		int bits = valueBits(size);
+		if (get(words, bits, line * size + column) == value)
+			return this;
+
+		long[] changed = words.clone();
+		set(changed, bits, line * size + column, value);
+		return new BoardSnapshot(sectorSize, changed);
+	}
+
+	// Copies the packed values into the array (of wordCount longs)
+	void copyInto(long[] target) {
+		System.arraycopy(words, 0, target, 0, words.length);
+	}
+
+	void writeTo(ByteBuffer buffer, int offset) {
+		for (int k = 0; k < words.length; k++)
+			buffer.putLong(offset + k * Long.BYTES, words[k]);
+	}
+
+	int[][] toBoard() {
+		int size = getSize();
+		int bits = valueBits(size);
+		int[][] board = new int[size][size];
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				board[i][j] = get(words, bits, i * size + j);
+
+		return board;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof BoardSnapshot && ((BoardSnapshot) other).sectorSize == sectorSize
+		    && Arrays.equals(((BoardSnapshot) other).words, words);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * sectorSize + Arrays.hashCode(words);
+	}
+}
@@ -0,0 +1,358 @@
+package sudokiscte;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Boards of games that are not being played (eg. idle games of a server), kept
+// out of the Java heap so that millions of them give the garbage collector
+// nothing to trace. Each game has a slot of fixed size in a direct buffer: its
+// id, a seed for its random plays, its initial and current boards, packed as in
+// BoardSnapshot, and its history of moves (see MoveJournal). The first
+// INLINE_MOVES moves are kept in the slot (192 bytes for 9x9); longer histories
+// go on in a chain of blocks of BLOCK_MOVES moves, taken from buffers of their
+// own. Games are parked from a SudokuBoard and loaded back into one, history and
+// position in it included. A View reads slots in place. Freed slots and blocks
+// are reused, the last freed first.
+//
+// Slots are allocated and freed under the lock of the store; a slot is read and
+// written by whoever holds it, one thread at a time (as boards are)
+class BoardStore {
+	// Size of the buffers slots and blocks are taken from (or of a slot, if larger)
+	static final int CHUNK_BYTES = 1 << 23;
+
+	static final int INLINE_MOVES = 16;
+	static final int BLOCK_MOVES = 63;
+
+	// Fields of a slot, by offset; boards follow, initial then current, and then
+	// the moves kept in the slot
+	private static final int ID = 0;
+	private static final int POSITION = 8; // in the history
+	private static final int STATE = 12;
+	private static final int HISTORY_SIZE = 16;
+	private static final int HISTORY_BLOCK = 20; // first block, if any
+	private static final int SEED = 24; // of the random plays (see SudokuBoard.nextSeed)
+	private static final int BOARDS = 32;
+
+	// Fields of a block: the next block of the chain, then the moves
+	private static final int NEXT = 0;
+	private static final int BLOCK_BYTES = Integer.BYTES * (1 + BLOCK_MOVES);
+
+	private static final int FREE = 0;
+	private static final int USED = 1;
+	private static final int NONE = -1;
+
+	final int sectorSize;
+	private final int size;
+	private final int valueBits;
+	private final int boardBytes;
+	private final int inlineMoves; // offset in the slot
+
+	private final Pool slots;
+	private final Pool blocks = new Pool(BLOCK_BYTES);
+
+	BoardStore(int sectorSize) {
+		BoardGeometry geometry = BoardGeometry.of(sectorSize);
+		this.sectorSize = sectorSize;
+		this.size = geometry.size;
+		this.valueBits = BoardSnapshot.valueBits(size);
+		this.boardBytes = BoardSnapshot.wordCount(sectorSize) * Long.BYTES;
+		this.inlineMoves = BOARDS + 2 * boardBytes;
+		this.slots = new Pool(inlineMoves + INLINE_MOVES * Integer.BYTES);
+	}
+
+	// Pieces of memory of a fixed size, in direct buffers, numbered from 0. Freed
+	// pieces are linked through their first int; used only under the lock of the
+	// store, but for reads of pieces already allocated
+	private static final class Pool {
+		final int pieceBytes;
+		final int chunkBits; // 2^chunkBits pieces per buffer
+
+		// Grown (replaced) under the lock
+		volatile ByteBuffer[] chunks = new ByteBuffer[0];
+		int count = 0; // ever allocated
+		int used = 0;
+		int firstFree = NONE;
+
+		Pool(int pieceBytes) {
+			this.pieceBytes = pieceBytes;
+			this.chunkBits = Math.max(0, 31 - Integer.numberOfLeadingZeros(CHUNK_BYTES / pieceBytes));
+		}
+
+		int allocate() {
+			int piece = firstFree;
+			if (piece != NONE)
+				firstFree = chunk(piece).getInt(offset(piece));
+			else {
+				if (count == chunks.length << chunkBits)
+					grow();
+				piece = count++;
+			}
+
+			used++;
+			return piece;
+		}
+
+		void free(int piece) {
+			chunk(piece).putInt(offset(piece), firstFree);
+			firstFree = piece;
+			used--;
+		}
+
+		private void grow() {
+			if (chunks.length == 1 << 31 - chunkBits)
+				throw new IllegalStateException("O armazém de tabuleiros está cheio");
+
+			ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+			grown[chunks.length] = ByteBuffer.allocateDirect(pieceBytes << chunkBits).order(ByteOrder.nativeOrder());
+			chunks = grown;
+		}
+
+		ByteBuffer chunk(int piece) {
+			ByteBuffer[] chunks = this.chunks;
+			if (piece < 0 || piece >>> chunkBits >= chunks.length)
+				throw new IllegalArgumentException("Posição inválida no armazém: " + piece);
+
+			return chunks[piece >>> chunkBits];
+		}
+
+		int offset(int piece) {
+			return (piece & (1 << chunkBits) - 1) * pieceBytes;
+		}
+
+		long bytes() {
+			return (long) chunks.length * ((long) pieceBytes << chunkBits);
+		}
+	}
+
+	int getSlotBytes() {
+		return slots.pieceBytes;
+	}
+
+	// Games in the store
+	synchronized int size() {
+		return slots.used;
+	}
+
+	// Slots ever allocated (used or free); slots are numbered from 0
+	synchronized int slotCount() {
+		return slots.count;
+	}
+
+	// Blocks holding the moves that do not fit in their slots
+	synchronized int blockCount() {
+		return blocks.used;
+	}
+
+	// Memory taken out of the heap
+	long offHeapBytes() {
+		return slots.bytes() + blocks.bytes();
+	}
+
+	// Stores the game in a new slot, returning the slot
+	int park(long id, SudokuBoard board) {
+		int slot = allocate();
+		write(slot, id, board);
+		return slot;
+	}
+
+	// Overwrites the game kept in a slot (eg. with a later state of it)
+	void write(int slot, long id, SudokuBoard board) {
+		if (board.getSectorSize() != sectorSize)
+			throw new IllegalArgumentException("O tabuleiro não tem o tamanho dos deste armazém");
+
+		ByteBuffer chunk = slots.chunk(slot);
+		int offset = slots.offset(slot);
+		checkUsed(chunk, offset, slot);
+
+		int[] history = board.getHistory();
+		chunk.putLong(offset + ID, id);
+		chunk.putLong(offset + SEED, board.nextSeed());
+		chunk.putInt(offset + POSITION, board.getHistoryPosition());
+		chunk.putInt(offset + HISTORY_SIZE, history.length);
+		board.getInitialSnapshot().writeTo(chunk, offset + BOARDS);
+		board.snapshot().writeTo(chunk, offset + BOARDS + boardBytes);
+
+		for (int k = 0; k < Math.min(history.length, INLINE_MOVES); k++)
+			chunk.putInt(offset + inlineMoves + k * Integer.BYTES, history[k]);
+
+		replaceBlocks(chunk, offset, history);
+	}
+
+	// Frees the blocks of the slot, and chains blocks for the moves that do not fit
+	// in it
+	private synchronized void replaceBlocks(ByteBuffer slotChunk, int slotOffset, int[] history) {
+		freeBlocks(slotChunk.getInt(slotOffset + HISTORY_BLOCK));
+
+		ByteBuffer previous = slotChunk;
+		int link = slotOffset + HISTORY_BLOCK;
+		for (int from = INLINE_MOVES; from < history.length; from += BLOCK_MOVES) {
+			int block = blocks.allocate();
+			ByteBuffer chunk = blocks.chunk(block);
+			int offset = blocks.offset(block);
+
+			previous.putInt(link, block);
+			for (int k = from; k < Math.min(from + BLOCK_MOVES, history.length); k++)
+				chunk.putInt(offset + (1 + k - from) * Integer.BYTES, history[k]);
+
+			previous = chunk;
+			link = offset + NEXT;
+		}
+
+		previous.putInt(link, NONE);
+	}
+
+	private void freeBlocks(int block) {
+		while (block != NONE) {
+			int next = blocks.chunk(block).getInt(blocks.offset(block) + NEXT);
+			blocks.free(block);
+			block = next;
+		}
+	}
+
+	// A board for the game in the slot, in the state it was stored in, with its
+	// history of moves; the slot is kept
+	SudokuBoard load(int slot) {
+		ByteBuffer chunk = slots.chunk(slot);
+		int offset = slots.offset(slot);
+		checkUsed(chunk, offset, slot);
+
+		SudokuBoard board = new SudokuBoard(BoardSnapshot.readFrom(sectorSize, chunk, offset + BOARDS),
+		    BoardSnapshot.readFrom(sectorSize, chunk, offset + BOARDS + boardBytes), chunk.getLong(offset + SEED));
+		board.restoreHistory(view().moveTo(slot).getHistory(), chunk.getInt(offset + POSITION));
+
+		return board;
+	}
+
+	// Loads the game in the slot and frees the slot
+	SudokuBoard unpark(int slot) {
+		SudokuBoard board = load(slot);
+		free(slot);
+		return board;
+	}
+
+	synchronized int allocate() {
+		int slot = slots.allocate();
+
+		ByteBuffer chunk = slots.chunk(slot);
+		int offset = slots.offset(slot);
+		chunk.putInt(offset + STATE, USED);
+		chunk.putInt(offset + POSITION, 0);
+		chunk.putInt(offset + HISTORY_SIZE, 0);
+		chunk.putInt(offset + HISTORY_BLOCK, NONE);
+
+		return slot;
+	}
+
+	synchronized void free(int slot) {
+		ByteBuffer chunk = slots.chunk(slot);
+		int offset = slots.offset(slot);
+		checkUsed(chunk, offset, slot);
+
+		freeBlocks(chunk.getInt(offset + HISTORY_BLOCK));
+		chunk.putInt(offset + HISTORY_BLOCK, NONE);
+		chunk.putInt(offset + STATE, FREE);
+		slots.free(slot);
+	}
+
+	private static void checkUsed(ByteBuffer chunk, int offset, int slot) {
+		if (chunk.getInt(offset + STATE) != USED)
+			throw new IllegalArgumentException("Posição livre no armazém: " + slot);
+	}
+
+	View view() {
+		return new View();
+	}
+
+	// Reads the slot it is moved to in place, without copying it or creating
+	// anything (but for getHistory); one view can go over any number of slots
+	final class View {
+		private ByteBuffer chunk;
+		private int offset;
+
+		View moveTo(int slot) {
+			chunk = slots.chunk(slot);
+			offset = slots.offset(slot);
+			return this;
+		}
+
+		boolean isUsed() {
+			return chunk.getInt(offset + STATE) == USED;
+		}
+
+		long getId() {
+			return chunk.getLong(offset + ID);
+		}
+
+		// Moves of the history made (the others can be redone)
+		int getHistoryPosition() {
+			return chunk.getInt(offset + POSITION);
+		}
+
+		int getHistorySize() {
+			return chunk.getInt(offset + HISTORY_SIZE);
+		}
+
+		// Move k of the history (see MoveJournal)
+		int getMove(int k) {
+			if (k < 0 || k >= getHistorySize())
+				throw new IllegalArgumentException("Posição inválida no histórico: " + k);
+			if (k < INLINE_MOVES)
+				return chunk.getInt(offset + inlineMoves + k * Integer.BYTES);
+
+			int block = chunk.getInt(offset + HISTORY_BLOCK);
+			for (k -= INLINE_MOVES; k >= BLOCK_MOVES; k -= BLOCK_MOVES)
+				block = blocks.chunk(block).getInt(blocks.offset(block) + NEXT);
+
+			return blocks.chunk(block).getInt(blocks.offset(block) + (1 + k) * Integer.BYTES);
+		}
+
+		int[] getHistory() {
+			int[] history = new int[getHistorySize()];
+			for (int k = 0; k < Math.min(history.length, INLINE_MOVES); k++)
+				history[k] = chunk.getInt(offset + inlineMoves + k * Integer.BYTES);
+
+			int block = chunk.getInt(offset + HISTORY_BLOCK);
+			for (int from = INLINE_MOVES; from < history.length; from += BLOCK_MOVES) {
+				ByteBuffer blockChunk = blocks.chunk(block);
+				int blockOffset = blocks.offset(block);
+				for (int k = from; k < Math.min(from + BLOCK_MOVES, history.length); k++)
+					history[k] = blockChunk.getInt(blockOffset + (1 + k - from) * Integer.BYTES);
+
+				block = blockChunk.getInt(blockOffset + NEXT);
+			}
+
+			return history;
+		}
+
+		int getSize() {
+			return size;
+		}
+
+		int getValue(int line, int column) {
+			return value(offset + BOARDS + boardBytes, line, column);
+		}
+
+		int getInitialValue(int line, int column) {
+			return value(offset + BOARDS, line, column);
+		}
+
+		// Positions still blank
+		int countBlank() {
+			int count = 0;
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++)
+					if (getValue(i, j) == 0)
+						count++;
+
+			return count;
+		}
+
+		private int value(int board, int line, int column) {
+			int cell = line * size + column;
+			int perWord = Long.SIZE / valueBits;
+			long word = chunk.getLong(board + cell / perWord * Long.BYTES);
+			return (int) (word >>> (cell % perWord) * valueBits) & (1 << valueBits) - 1;
+		}
+	}
+}
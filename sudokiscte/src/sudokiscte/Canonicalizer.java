@@ -0,0 +1,202 @@
+package sudokiscte;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Maps a board to a canonical form, the same for every board that is equivalent
+// to it by relabeling values, reordering bands (groups of sector lines), lines
+// within a band, stacks (groups of sector columns), columns within a stack, and
+// transposing. The canonical form is the least such board, read line after
+// line, with values relabeled in order of appearance and blanks after every
+// value (so that it starts with as many values as possible).
+//
+// It is found line by line: of every arrangement that gives the least first
+// line, only those that also give the least second line are kept, and so on.
+// Every arrangement tied so far is kept, so the form is exact, not a greedy
+// guess. Column orders are enumerated, which limits it to boards up to 9x9
+// (1296 column orders; 16x16 boards would have 7962624): `of` rejects larger
+// sector sizes
+class Canonicalizer {
+	static final int MAX_SECTOR_SIZE = 3;
+
+	private static final Canonicalizer[] cache = new Canonicalizer[MAX_SECTOR_SIZE + 1];
+
+	private final int sectorSize;
+	private final int size;
+
+	// Every column order that keeps the columns of a stack together
+	private final int[][] columnOrders;
+
+	static synchronized Canonicalizer of(int sectorSize) {
+		if (sectorSize < 1 || sectorSize > MAX_SECTOR_SIZE)
+			throw new IllegalArgumentException("Tamanho de setor não suportado: " + sectorSize);
+
+		if (cache[sectorSize] == null)
+			cache[sectorSize] = new Canonicalizer(sectorSize);
+
+		return cache[sectorSize];
+	}
+
+	private Canonicalizer(int sectorSize) {
+		this.sectorSize = sectorSize;
+		this.size = sectorSize * sectorSize;
+
+		List<int[]> orders = new ArrayList<>();
+		List<int[]> permutations = permutations(sectorSize);
+		addColumnOrders(orders, new int[size], 0, permutations, new boolean[sectorSize]);
+		this.columnOrders = orders.toArray(new int[orders.size()][]);
+	}
+
+	private static List<int[]> permutations(int n) {
+		List<int[]> permutations = new ArrayList<>();
+		addPermutations(permutations, new int[n], 0, new boolean[n]);
+		return permutations;
+	}
+
+	private static void addPermutations(List<int[]> permutations, int[] current, int index, boolean[] used) {
+		if (index == current.length) {
+			permutations.add(current.clone());
+			return;
+		}
+
+		for (int k = 0; k < current.length; k++)
+			if (!used[k]) {
+				used[k] = true;
+				current[index] = k;
+				addPermutations(permutations, current, index + 1, used);
+				used[k] = false;
+			}
+	}
+
+	// Chooses, stack by stack, which stack goes next and in which order its
+	// columns go
+	private void addColumnOrders(List<int[]> orders, int[] order, int stack, List<int[]> permutations,
+	    boolean[] usedStacks) {
+		if (stack == sectorSize) {
+			orders.add(order.clone());
+			return;
+		}
+
+		for (int s = 0; s < sectorSize; s++) {
+			if (usedStacks[s])
+				continue;
+
+			usedStacks[s] = true;
+			for (int[] permutation : permutations) {
+				for (int k = 0; k < sectorSize; k++)
+					order[stack * sectorSize + k] = s * sectorSize + permutation[k];
+				addColumnOrders(orders, order, stack + 1, permutations, usedStacks);
+			}
+			usedStacks[s] = false;
+		}
+	}
+
+	// A partial arrangement: lines chosen so far, column order and relabeling
+	private static class Arrangement {
+		final int[][] board; // the board, or its transpose
+		final int transposed;
+		final int usedLines; // bit l for line l of the board
+		final int band; // band of the last line chosen
+		final int order; // index in columnOrders
+		final int[] labels; // new value of each value, 0 when not yet seen
+		final int nextLabel;
+
+		Arrangement(int[][] board, int transposed, int usedLines, int band, int order, int[] labels, int nextLabel) {
+			this.board = board;
+			this.transposed = transposed;
+			this.usedLines = usedLines;
+			this.band = band;
+			this.order = order;
+			this.labels = labels;
+			this.nextLabel = nextLabel;
+		}
+
+		// Arrangements with the same key have the same lines left to choose, and
+		// give the same lines from then on: 1 bit for the transposition, 9 for the
+		// lines used, 11 for the column order and 4 for the label of each value
+		long key() {
+			long key = (long) transposed << 9 | usedLines;
+			key = key << 11 | order;
+			for (int v = 1; v < labels.length; v++)
+				key = key << 4 | labels[v];
+			return key;
+		}
+	}
+
+	int[][] canonical(int[][] board) {
+		BoardGeometry.ofBoard(board);
+		if (board.length != size)
+			throw new IllegalArgumentException("O tabuleiro não tem dimensões válidas");
+
+		int[][] transpose = new int[size][size];
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				transpose[j][i] = board[i][j];
+
+		List<Arrangement> arrangements = new ArrayList<>();
+		for (int order = 0; order < columnOrders.length; order++) {
+			arrangements.add(new Arrangement(board, 0, 0, -1, order, new int[size + 1], 1));
+			arrangements.add(new Arrangement(transpose, 1, 0, -1, order, new int[size + 1], 1));
+		}
+
+		int[][] canonical = new int[size][];
+		int[] line = new int[size];
+		int[] labels = new int[size + 1];
+
+		for (int depth = 0; depth < size; depth++) {
+			int[] best = null;
+			List<Arrangement> kept = new ArrayList<>();
+			Set<Long> keys = new HashSet<>();
+
+			for (Arrangement arrangement : arrangements)
+				for (int l = 0; l < size; l++) {
+					int band = l / sectorSize;
+					boolean allowed = depth % sectorSize == 0 ? (arrangement.usedLines >> (band * sectorSize)
+					    & ((1 << sectorSize) - 1)) == 0 : band == arrangement.band;
+					if (!allowed || (arrangement.usedLines & 1 << l) != 0)
+						continue;
+
+					System.arraycopy(arrangement.labels, 0, labels, 0, labels.length);
+					int nextLabel = arrangement.nextLabel;
+					int[] order = columnOrders[arrangement.order];
+					int comparison = best == null ? -1 : 0;
+
+					for (int k = 0; k < size && comparison <= 0; k++) {
+						int value = arrangement.board[l][order[k]];
+						if (value != 0 && labels[value] == 0)
+							labels[value] = nextLabel++;
+
+						// Blanks go after every value
+						line[k] = value == 0 ? size + 1 : labels[value];
+						if (comparison == 0)
+							comparison = Integer.compare(line[k], best[k]);
+					}
+
+					if (comparison > 0)
+						continue;
+					if (comparison < 0) {
+						best = line.clone();
+						kept.clear();
+						keys.clear();
+					}
+
+					Arrangement next = new Arrangement(arrangement.board, arrangement.transposed,
+					    arrangement.usedLines | 1 << l, band, arrangement.order, labels.clone(), nextLabel);
+					if (keys.add(next.key()))
+						kept.add(next);
+				}
+
+			canonical[depth] = best;
+			arrangements = kept;
+		}
+
+		for (int[] canonicalLine : canonical)
+			for (int k = 0; k < size; k++)
+				if (canonicalLine[k] == size + 1)
+					canonicalLine[k] = 0;
+
+		return canonical;
+	}
+}
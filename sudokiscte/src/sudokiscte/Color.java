@@ -7,6 +7,7 @@ package sudokiscte;
 class Color {
 
 	private final int[] rgb; // @color
+	private final int argb; // rgb packed as in ImageUtil.encodeRgb(r, g, b)
 
 	/**
 	 * Creates an RGB color. Provided values have to be in the interval [0, 255]
@@ -16,6 +17,14 @@ class Color {
 			throw new IllegalArgumentException("invalid RGB values: " + r + ", " + g + ", " + b);
 
 		this.rgb = new int[] { r, g, b };
+		this.argb = 255 << 24 | r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * Creates a color from a value encoded as in ImageUtil.encodeRgb(r, g, b).
+	 */
+	static Color fromArgb(int argb) {
+		return new Color((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
 	}
 
 	/**
@@ -39,6 +48,13 @@ class Color {
 		return rgb[2];
 	}
 
+	/**
+	 * Color encoded as a 32-bit integer, as in ImageUtil.encodeRgb(r, g, b)
+	 */
+	int getArgb() {
+		return argb;
+	}
+
 	/**
 	 * Obtains the luminance in the interval [0, 255].
 	 */
@@ -51,7 +67,7 @@ class Color {
 	}
 
 	boolean sameAs(Color c) {
-		return this.getR() == c.getR() && this.getG() == c.getG() && this.getB() == c.getB();
+		return this.argb == c.argb;
 	}
 
 	static final int MAX = 255;
@@ -1,63 +1,201 @@
 package sudokiscte;
 
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
- * Represents color images. Image data is represented as a matrix: - the number
- * of lines corresponds to the image height (data.length) - the length of the
- * lines corresponds to the image width (data[*].length) - pixel color is
- * encoded as integers (ARGB)
+ * Represents color images. Image data is stored in a single array, line after
+ * line: - the image has width * height pixels - the pixel at (x, y) is at
+ * position y * width + x - pixel color is encoded as integers (ARGB)
  */
 
 class ColorImage {
 
-	private int[][] data; // @colorimage
+	private int[] data; // @colorimage
+	private int width;
+	private int height;
 
 	// Construtors
 
 	ColorImage(int width, int height) {
-		data = new int[height][width];
+		this.data = new int[width * height];
+		this.width = width;
+		this.height = height;
 	}
 
 	ColorImage(String file) {
-		this.data = ImageUtil.readColorImage(file);
+		this(ImageUtil.readImage(file));
 	}
 
-	ColorImage(int[][] data) {
+	ColorImage(BufferedImage img) {
+		this(ImageUtil.argbPixels(img), img.getWidth(), img.getHeight());
+	}
+
+	/**
+	 * Creates an image over the given pixels, line after line, without copying
+	 * them.
+	 */
+	ColorImage(int[] data, int width, int height) {
 		this.data = data;
+		this.width = width;
+		this.height = height;
+	}
+
+	ColorImage(int[][] data) {
+		this(data[0].length, data.length);
+
+		for (int y = 0; y < height; y++)
+			System.arraycopy(data[y], 0, this.data, y * width, width);
 	}
 
 	ColorImage(int width, int height, Color color) {
-		data = new int[height][width];
+		this(width, height);
 
-		for (int x = 0; x < this.getWidth(); x++) {
-			for (int y = 0; y < this.getHeight(); y++) {
-				this.setColor(x, y, color);
-			}
-		}
+		fillRect(0, 0, width, height, color.getArgb());
 	}
 
 	// Metods
 
 	int getWidth() {
-		return data[0].length;
+		return width;
 	}
 
 	int getHeight() {
-		return data.length;
+		return height;
+	}
+
+	/**
+	 * Pixels of the image, line after line. Changes to the array are changes to
+	 * the image.
+	 */
+	int[] getPixels() {
+		return data;
 	}
 
 	void setColor(int x, int y, Color c) {
-		data[y][x] = ImageUtil.encodeRgb(c.getR(), c.getG(), c.getB());
+		data[y * width + x] = c.getArgb();
 	}
 
 	Color getColor(int x, int y) {
-		int[] rgb = ImageUtil.decodeRgb(data[y][x]);
-		return new Color(rgb[0], rgb[1], rgb[2]);
+		return Color.fromArgb(data[y * width + x]);
+	}
+
+	/**
+	 * Pixel color encoded as in ImageUtil.encodeRgb(r, g, b).
+	 */
+	int getRgb(int x, int y) {
+		return data[y * width + x];
+	}
+
+	/**
+	 * Sets a pixel color encoded as in ImageUtil.encodeRgb(r, g, b).
+	 */
+	void setRgb(int x, int y, int argb) {
+		data[y * width + x] = argb;
+	}
+
+	/**
+	 * Fills the pixels from fromX (inclusive) to toX (exclusive) of a line.
+	 */
+	void fillRow(int y, int fromX, int toX, int argb) {
+		Arrays.fill(data, y * width + fromX, y * width + toX, argb);
+	}
+
+	void fillRect(int x, int y, int rectWidth, int rectHeight, int argb) {
+		int fromX = x, toX = x + rectWidth;
+		forEachLine(y, y + rectHeight, rectWidth, line -> fillRow(line, fromX, toX, argb));
+	}
+
+	/**
+	 * Fills a rectangle, leaving untouched the pixels that have the skipped color
+	 * (eg. grid lines).
+	 */
+	void fillRectExcept(int x, int y, int rectWidth, int rectHeight, int argb, int skippedArgb) {
+		int fromX = x, toX = x + rectWidth;
+		forEachLine(y, y + rectHeight, rectWidth, line -> {
+			for (int index = line * width + fromX, end = line * width + toX; index < end; index++)
+				if (data[index] != skippedArgb)
+					data[index] = argb;
+		});
+	}
+
+	/**
+	 * Copies a rectangle of another image (or of this one, if the areas do not
+	 * overlap) into this image.
+	 */
+	void copyRect(ColorImage src, int srcX, int srcY, int x, int y, int rectWidth,
+	    int rectHeight) {
+		forEachLine(0, rectHeight, rectWidth, line -> System.arraycopy(src.data, (srcY + line) * src.width + srcX, data,
+		    (y + line) * width + x, rectWidth));
+	}
+
+	/**
+	 * Copies a rectangle of pixels into this image, skipping the source pixels
+	 * that have the transparent value. The rectangle starts at srcOffset in the
+	 * source, whose lines are srcStride pixels apart.
+	 */
+	void copyRectExcept(int[] src, int srcOffset, int srcStride, int x, int y, int rectWidth,
+	    int rectHeight, int transparentArgb) {
+		forEachLine(0, rectHeight, rectWidth, line -> {
+			for (int k = 0, from = srcOffset + line * srcStride, to = (y + line) * width + x; k < rectWidth; k++) {
+				int value = src[from + k];
+				if (value != transparentArgb)
+					data[to + k] = value;
+			}
+		});
+	}
+
+	// Raster operations work one line at a time; large areas are split in stripes
+	// of lines painted in parallel, small ones are painted on the caller's thread
+
+	static final int PARALLEL_THRESHOLD = 1 << 20; // pixels
+	static final int STRIPE_PIXELS = 1 << 16;
+
+	interface LineOperation {
+		void apply(int line);
+	}
+
+	private static void forEachLine(int fromLine, int toLine, int lineWidth, LineOperation op) {
+		if ((long) (toLine - fromLine) * lineWidth < PARALLEL_THRESHOLD) {
+			for (int line = fromLine; line < toLine; line++)
+				op.apply(line);
+			return;
+		}
+
+		int stripeLines = Math.max(1, STRIPE_PIXELS / Math.max(1, lineWidth));
+		ForkJoinPool.commonPool().invoke(new LineStripes(fromLine, toLine, stripeLines, op));
+	}
+
+	private static class LineStripes extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int fromLine, toLine, stripeLines;
+		private final LineOperation op;
+
+		LineStripes(int fromLine, int toLine, int stripeLines, LineOperation op) {
+			this.fromLine = fromLine;
+			this.toLine = toLine;
+			this.stripeLines = stripeLines;
+			this.op = op;
+		}
+
+		@Override
+		protected void compute() {
+			if (toLine - fromLine <= stripeLines) {
+				for (int line = fromLine; line < toLine; line++)
+					op.apply(line);
+				return;
+			}
+
+			int middle = (fromLine + toLine) >>> 1;
+			invokeAll(new LineStripes(fromLine, middle, stripeLines, op), new LineStripes(middle, toLine, stripeLines, op));
+		}
 	}
 
 	void whiteBoard() {
-		for (int i = 0; i < data.length; i++)
-			for (int j = 0; j < data[i].length; j++)
-				setColor(i, j, Color.WHITE);
+		fillRect(0, 0, width, height, Color.WHITE.getArgb());
 	}
 
 	void wipeCell(int line, int column, int size) {
@@ -65,35 +203,30 @@ class ColorImage {
 	}
 
 	void paintCell(int line, int column, int size, Color color) {
-		for (int i = (line * 60); i < (line * 60) + size; i++)
-			for (int j = (column * 60); j < (column * 60) + size; j++)
-				if (!getColor(j, i).sameAs(Color.SOLARIZED_LINES))
-					setColor(j, i, color);
+		fillRectExcept(column * size, line * size, size, size, color.getArgb(), Color.SOLARIZED_LINES.getArgb());
 	}
 
 	void drawMargin() {
 		drawHorizontalLine(0, Color.SOLARIZED_LINES);
-		drawHorizontalLine(data.length - 1, Color.SOLARIZED_LINES);
+		drawHorizontalLine(height - 1, Color.SOLARIZED_LINES);
 
 		drawVerticalLine(0, Color.SOLARIZED_LINES);
-		drawVerticalLine(data[0].length - 1, Color.SOLARIZED_LINES);
+		drawVerticalLine(width - 1, Color.SOLARIZED_LINES);
 	}
 
 	void drawHorizontalLine(int line, Color color) {
-		for (int i = 0; i < data.length; i++) {
-			setColor(i, line, color);
-		}
+		fillRow(line, 0, width, color.getArgb());
 	}
 
 	void drawVerticalLine(int column, Color color) {
-		for (int j = 0; j < data[column].length; j++) {
-			setColor(column, j, color);
-		}
+		int argb = color.getArgb();
+		for (int index = column; index < data.length; index += width)
+			data[index] = argb;
 	}
 
 	void drawGrid(int lines, int columns, int regionSize) {
-		int columnPixels = data.length / columns;
-		int linePixels = data.length / lines;
+		int columnPixels = width / columns;
+		int linePixels = height / lines;
 
 		while (columns > 0) {
 			drawVerticalLine((columns - 1) * columnPixels, Color.SOLARIZED_LINES);
@@ -125,24 +258,38 @@ class ColorImage {
 	}
 
 	private void drawText(int textX, int textY, String text, int textSize, Color textColor, boolean isCentered) {
-		int r = 255 - textColor.getR();
-		int g = 255 - textColor.getG();
-		int b = 255 - textColor.getB();
-
-		Color maskColor = new Color(r, g, b);
+		if (text.isEmpty())
+			return;
 
-		int encodedMaskRGB = ImageUtil.encodeRgb(r, g, b);
+		GlyphAtlas atlas = GlyphAtlas.shared();
+		GlyphAtlas.Face face = atlas.face(textSize);
 
-		int[][] aux = ImageUtil.createColorImageWithText(getWidth(), getHeight(), maskColor, textX, textY, text, textSize,
-		    textColor, isCentered);
+		int penX = textX - (isCentered ? face.stringWidth(text) / 2 : 0);
+		int penY = textY - (isCentered ? face.lineHeight / 2 : 0) + face.baseline;
 
-		for (int i = 0; i < aux.length; i++) {
-			for (int j = 0; j < aux[i].length; j++) {
-				int value = aux[i][j];
-				if (value != encodedMaskRGB) {
-					data[i][j] = aux[i][j];
-				}
-			}
+		for (int k = 0; k < text.length(); k++) {
+			GlyphAtlas.Glyph glyph = atlas.glyph(text.charAt(k), textSize, textColor);
+			drawGlyph(glyph, penX, penY);
+			penX += glyph.advance;
 		}
 	}
+
+	/**
+	 * Copies the pixels of a glyph into the image, clipped to its bounds.
+	 */
+	private void drawGlyph(GlyphAtlas.Glyph glyph, int penX, int penY) {
+		int left = penX + glyph.offsetX;
+		int top = penY + glyph.offsetY;
+
+		int fromY = Math.max(0, -top);
+		int toY = Math.min(glyph.height, getHeight() - top);
+		int fromX = Math.max(0, -left);
+		int toX = Math.min(glyph.width, getWidth() - left);
+		if (fromX >= toX || fromY >= toY)
+			return;
+
+		// Pixels left blank by the glyph are transparent
+		copyRectExcept(glyph.pixels, fromY * glyph.width + fromX, glyph.width, left + fromX, top + fromY, toX - fromX,
+		    toY - fromY, 0);
+	}
 }
\ No newline at end of file
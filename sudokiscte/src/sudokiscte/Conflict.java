@@ -0,0 +1,35 @@
+package sudokiscte;
+
+// A play that left a value repeated in a line, column or sector, as reported to
+// the listeners of the board (see SudokuListener.conflictFound)
+final class Conflict {
+	enum Reason {
+		LINE, COLUMN, SECTOR
+	}
+
+	final Reason reason;
+	final int unit; // the line, column or sector with the repeated value
+	final int line;
+	final int column;
+	final int value;
+
+	Conflict(Reason reason, int unit, int line, int column, int value) {
+		this.reason = reason;
+		this.unit = unit;
+		this.line = line;
+		this.column = column;
+		this.value = value;
+	}
+
+	@Override
+	public String toString() {
+		switch (reason) {
+		case LINE:
+			return "Jogada inválida na linha " + unit;
+		case COLUMN:
+			return "Jogada inválida na coluna " + unit;
+		default:
+			return "Jogada inválida no setor " + unit;
+		}
+	}
+}
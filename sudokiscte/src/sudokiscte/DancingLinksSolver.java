@@ -0,0 +1,196 @@
+package sudokiscte;
+
+// Exact cover solver (Knuth's Algorithm X with dancing links). Each row of the
+// matrix places a value in a position and covers four constraints: the position
+// is filled, and the value appears in its line, its column and its sector. The
+// links are kept in parallel int arrays instead of node objects
+class DancingLinksSolver implements SudokuSolver {
+
+	@Override
+	public Result search(int[][] board, long limit, SolutionVisitor visitor) {
+		BoardGeometry geometry = BoardGeometry.ofBoard(board);
+		Matrix matrix = new Matrix(geometry, limit, visitor);
+
+		if (matrix.placeGivens(geometry.flatten(board)))
+			matrix.search(0);
+
+		return new Result(matrix.first, matrix.solutions, matrix.nodes);
+	}
+
+	private static class Matrix {
+		static final int ROOT = 0;
+
+		final BoardGeometry geometry;
+		final long limit;
+		final SolutionVisitor visitor;
+
+		final int[] left, right, up, down;
+		final int[] columnOf; // header of each node
+		final int[] rowOf; // row of each node: position * size + value - 1
+		final int[] columnSize;
+		final boolean[] covered;
+
+		final int[] rowFirstNode;
+		final int[] values;
+		final int[] chosen;
+
+		int[][] first;
+		long solutions;
+		long nodes;
+
+		Matrix(BoardGeometry geometry, long limit, SolutionVisitor visitor) {
+			this.geometry = geometry;
+			this.limit = limit;
+			this.visitor = visitor;
+
+			int columns = 4 * geometry.cells;
+			int rows = geometry.cells * geometry.size;
+			int total = 1 + columns + 4 * rows;
+
+			left = new int[total];
+			right = new int[total];
+			up = new int[total];
+			down = new int[total];
+			columnOf = new int[total];
+			rowOf = new int[total];
+			columnSize = new int[columns + 1];
+			covered = new boolean[columns + 1];
+			rowFirstNode = new int[rows];
+			values = new int[geometry.cells];
+			chosen = new int[geometry.cells];
+
+			// Headers, in a circular list around the root
+			for (int c = 0; c <= columns; c++) {
+				left[c] = c == 0 ? columns : c - 1;
+				right[c] = c == columns ? 0 : c + 1;
+				up[c] = down[c] = c;
+				columnOf[c] = c;
+			}
+
+			int node = columns + 1;
+			int size = geometry.size;
+			for (int cell = 0; cell < geometry.cells; cell++)
+				for (int value = 1; value <= size; value++) {
+					int row = cell * size + value - 1;
+					int[] rowColumns = { 1 + cell, 1 + geometry.cells + geometry.lineOf[cell] * size + value - 1,
+					    1 + 2 * geometry.cells + geometry.columnOf[cell] * size + value - 1,
+					    1 + 3 * geometry.cells + geometry.sectorOf[cell] * size + value - 1 };
+
+					rowFirstNode[row] = node;
+					for (int k = 0; k < 4; k++, node++) {
+						int c = rowColumns[k];
+						columnOf[node] = c;
+						rowOf[node] = row;
+
+						// Append at the bottom of the column
+						up[node] = up[c];
+						down[node] = c;
+						down[up[c]] = node;
+						up[c] = node;
+						columnSize[c]++;
+
+						left[node] = k == 0 ? node + 3 : node - 1;
+						right[node] = k == 3 ? node - 3 : node + 1;
+					}
+				}
+		}
+
+		// Covers the constraints of the given values; false if two of them collide
+		boolean placeGivens(int[] givens) {
+			for (int cell = 0; cell < givens.length; cell++) {
+				if (givens[cell] == 0)
+					continue;
+
+				int first = rowFirstNode[cell * geometry.size + givens[cell] - 1];
+				int node = first;
+				do {
+					if (covered[columnOf[node]])
+						return false;
+					cover(columnOf[node]);
+					node = right[node];
+				} while (node != first);
+
+				values[cell] = givens[cell];
+			}
+
+			return true;
+		}
+
+		void cover(int c) {
+			covered[c] = true;
+			right[left[c]] = right[c];
+			left[right[c]] = left[c];
+
+			for (int i = down[c]; i != c; i = down[i])
+				for (int j = right[i]; j != i; j = right[j]) {
+					up[down[j]] = up[j];
+					down[up[j]] = down[j];
+					columnSize[columnOf[j]]--;
+				}
+		}
+
+		void uncover(int c) {
+			for (int i = up[c]; i != c; i = up[i])
+				for (int j = left[i]; j != i; j = left[j]) {
+					columnSize[columnOf[j]]++;
+					up[down[j]] = j;
+					down[up[j]] = j;
+				}
+
+			right[left[c]] = c;
+			left[right[c]] = c;
+			covered[c] = false;
+		}
+
+		// Returns true when the search has to stop
+		boolean search(int depth) {
+			nodes++;
+
+			if (right[ROOT] == ROOT)
+				return found(depth);
+
+			// Column with the fewest rows left
+			int c = right[ROOT];
+			for (int j = right[c]; j != ROOT; j = right[j])
+				if (columnSize[j] < columnSize[c])
+					c = j;
+
+			if (columnSize[c] == 0)
+				return false;
+
+			cover(c);
+			boolean stop = false;
+
+			for (int r = down[c]; r != c && !stop; r = down[r]) {
+				chosen[depth] = rowOf[r];
+				for (int j = right[r]; j != r; j = right[j])
+					cover(columnOf[j]);
+
+				stop = search(depth + 1);
+
+				for (int j = left[r]; j != r; j = left[j])
+					uncover(columnOf[j]);
+			}
+
+			uncover(c);
+			return stop;
+		}
+
+		boolean found(int depth) {
+			int[] solution = values.clone();
+			for (int k = 0; k < depth; k++)
+				solution[chosen[k] / geometry.size] = chosen[k] % geometry.size + 1;
+
+			int[][] board = geometry.toBoard(solution);
+
+			solutions++;
+			if (first == null)
+				first = board;
+
+			if (visitor != null && !visitor.visit(geometry.toBoard(solution)))
+				return true;
+
+			return solutions >= limit;
+		}
+	}
+}
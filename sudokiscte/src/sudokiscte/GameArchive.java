@@ -0,0 +1,171 @@
+package sudokiscte;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Append-only archive of saved games. Records are kept one after the other in a
+// data file, each as its length (4 bytes) followed by the game in the .sudgame
+// format; a second file (same name plus ".idx") holds the offset of every record
+// (8 bytes each), so that any game is found in constant time. Reads go through
+// memory-mapped segments of the data file
+class GameArchive implements Closeable {
+	static final String INDEX_SUFFIX = ".idx";
+	static final int SEGMENT_BYTES = 1 << 30;
+
+	private final FileChannel data;
+	private final FileChannel index;
+	private long count;
+	private long dataSize;
+
+	// Mapped segments of the data file, mapped on first use; a segment also covers
+	// the end of the records that start in it, up to the size mapped
+	private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	private MappedByteBuffer indexMap;
+
+	private GameArchive(FileChannel data, FileChannel index) throws IOException {
+		this.data = data;
+		this.index = index;
+		recover();
+	}
+
+	static GameArchive open(String fileName) throws IOException {
+		Path path = Paths.get(fileName);
+		Path indexPath = Paths.get(fileName + INDEX_SUFFIX);
+
+		FileChannel data = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+		    StandardOpenOption.WRITE);
+		try {
+			FileChannel index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			    StandardOpenOption.WRITE);
+			return new GameArchive(data, index);
+		} catch (IOException e) {
+			data.close();
+			throw e;
+		}
+	}
+
+	// Drops what an interrupted append may have left behind: index entries of
+	// records that did not reach the data file, and data past the last record
+	private void recover() throws IOException {
+		count = index.size() / 8;
+		dataSize = data.size();
+
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		while (count > 0) {
+			buffer.clear();
+			index.read(buffer, (count - 1) * 8);
+			long offset = buffer.getLong(0);
+
+			buffer.clear().limit(4);
+			if (offset + 4 <= dataSize && data.read(buffer, offset) == 4 && offset + 4 + buffer.getInt(0) <= dataSize) {
+				dataSize = offset + 4 + buffer.getInt(0);
+				break;
+			}
+			count--;
+		}
+
+		if (count == 0)
+			dataSize = 0;
+
+		index.truncate(count * 8);
+		data.truncate(dataSize);
+	}
+
+	synchronized long size() {
+		return count;
+	}
+
+	// Appends a game and returns its position in the archive
+	synchronized long append(SavedGame game) throws IOException {
+		byte[] encoded = game.encode();
+		ByteBuffer record = ByteBuffer.allocate(4 + encoded.length);
+		record.putInt(encoded.length).put(encoded).flip();
+
+		long offset = dataSize;
+		while (record.hasRemaining())
+			data.write(record, offset + record.position());
+
+		ByteBuffer entry = ByteBuffer.allocate(8);
+		entry.putLong(offset).flip();
+		while (entry.hasRemaining())
+			index.write(entry, count * 8 + entry.position());
+
+		dataSize += record.limit();
+		return count++;
+	}
+
+	synchronized SavedGame get(long position) throws IOException {
+		if (position < 0 || position >= count)
+			throw new IndexOutOfBoundsException("Jogo " + position + " não existe no arquivo");
+
+		long offset = indexEntry(position);
+		int length = mappedData(offset, 4).getInt();
+		return SavedGame.decode(mappedData(offset + 4, length));
+	}
+
+	// Makes the appended games durable
+	synchronized void force() throws IOException {
+		data.force(false);
+		index.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			data.close();
+		} finally {
+			index.close();
+		}
+	}
+
+	private long indexEntry(long position) throws IOException {
+		if (indexMap == null || indexMap.capacity() < (position + 1) * 8) {
+			// Offsets past 2GB of index (268M games) are read without a mapping
+			if (count * 8 > Integer.MAX_VALUE) {
+				ByteBuffer entry = ByteBuffer.allocate(8);
+				index.read(entry, position * 8);
+				return entry.getLong(0);
+			}
+			indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, count * 8);
+		}
+
+		return indexMap.getLong((int) (position * 8));
+	}
+
+	// A read-only view of `length` bytes of the data file at the given offset
+	private ByteBuffer mappedData(long offset, int length) throws IOException {
+		int segment = (int) (offset / SEGMENT_BYTES);
+		long segmentStart = (long) segment * SEGMENT_BYTES;
+		long end = offset + length;
+
+		// Records that do not fit in what a segment can map are read directly
+		if (end - segmentStart > Integer.MAX_VALUE) {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining())
+				data.read(buffer, offset + buffer.position());
+			buffer.flip();
+			return buffer;
+		}
+
+		if (segment >= segments.length)
+			segments = Arrays.copyOf(segments, segment + 1);
+
+		MappedByteBuffer mapped = segments[segment];
+		if (mapped == null || segmentStart + mapped.capacity() < end) {
+			long mapSize = Math.min(dataSize - segmentStart, Integer.MAX_VALUE);
+			mapped = data.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.max(mapSize, end - segmentStart));
+			segments[segment] = mapped;
+		}
+
+		ByteBuffer view = mapped.duplicate();
+		view.position((int) (offset - segmentStart)).limit((int) (end - segmentStart));
+		return view.slice();
+	}
+}
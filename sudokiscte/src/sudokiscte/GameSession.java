@@ -0,0 +1,153 @@
+package sudokiscte;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// A game played by many threads: commands are queued (without locks) and run one
+// at a time, in order, on an executor, so that only one thread at a time uses
+// the board. A session is never bound to a thread while it has nothing to do
+class GameSession {
+	// Commands run in one go before the executor is given back to other sessions
+	static final int MAX_COMMANDS_PER_RUN = 64;
+
+	private final long id;
+	private final int sectorSize;
+	private final Executor executor;
+
+	// Used only by the commands: the board (null while it is parked in a store,
+	// with the listeners it had), and the hint engine, created on the first hint
+	private SudokuBoard board;
+	private BoardStore store;
+	private int slot;
+	private SudokuListener[] parkedListeners;
+	private HintEngine hints;
+
+	private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	// When the last command was sent, and whether the board is parked
+	private volatile long lastUsed = System.nanoTime();
+	private volatile boolean parked = false;
+
+	GameSession(long id, SudokuBoard board, Executor executor) {
+		this.id = id;
+		this.sectorSize = board.getSectorSize();
+		this.board = board;
+		this.executor = executor;
+	}
+
+	long getId() {
+		return id;
+	}
+
+	int getSectorSize() {
+		return sectorSize;
+	}
+
+	boolean isParked() {
+		return parked;
+	}
+
+	// Time since the last command was sent, if none is waiting to be run
+	long idleNanos() {
+		return scheduled.get() ? 0 : System.nanoTime() - lastUsed;
+	}
+
+	// Runs the command on the board, after every command sent before it; the
+	// result (or the exception thrown) is handed back through the future
+	<T> CompletableFuture<T> submit(final Function<SudokuBoard, T> command) {
+		final CompletableFuture<T> reply = new CompletableFuture<>();
+
+		lastUsed = System.nanoTime();
+		enqueue(() -> {
+			try {
+				reply.complete(command.apply(board()));
+			} catch (RuntimeException e) {
+				reply.completeExceptionally(e);
+			}
+		});
+
+		return reply;
+	}
+
+	private void enqueue(Runnable command) {
+		mailbox.add(command);
+		if (scheduled.compareAndSet(false, true))
+			executor.execute(this::run);
+	}
+
+	// The next logical step on the board (null if there is none)
+	CompletableFuture<HintEngine.Hint> hint() {
+		return submit(board -> {
+			if (hints == null)
+				hints = new HintEngine(board);
+			return hints.next();
+		});
+	}
+
+	// Moves the board out of the heap, into the store, until the next command
+	// loads it back, with its history of moves; for sessions left idle (eg.
+	// waiting for their player). The listeners of the board are moved to the board
+	// loaded. Parking is not a use of the session, and a parked session is left as
+	// it is; the reply tells whether the board was parked
+	CompletableFuture<Boolean> park(final BoardStore store) {
+		final CompletableFuture<Boolean> reply = new CompletableFuture<>();
+
+		enqueue(() -> {
+			try {
+				if (board == null) {
+					reply.complete(false);
+					return;
+				}
+
+				if (hints != null) {
+					hints.detach();
+					hints = null;
+				}
+
+				parkedListeners = board.getListeners();
+				slot = store.park(id, board);
+				this.store = store;
+				board = null;
+				parked = true;
+				reply.complete(true);
+			} catch (RuntimeException e) {
+				reply.completeExceptionally(e);
+			}
+		});
+
+		return reply;
+	}
+
+	private SudokuBoard board() {
+		if (board == null) {
+			board = store.unpark(slot);
+			for (SudokuListener listener : parkedListeners)
+				board.addListener(listener);
+
+			store = null;
+			parkedListeners = null;
+			parked = false;
+		}
+
+		return board;
+	}
+
+	private void run() {
+		for (int k = 0; k < MAX_COMMANDS_PER_RUN; k++) {
+			Runnable command = mailbox.poll();
+			if (command == null)
+				break;
+			command.run();
+		}
+
+		// Commands may have been queued after the last poll, and before this
+		scheduled.set(false);
+		if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true))
+			executor.execute(this::run);
+	}
+}
@@ -0,0 +1,186 @@
+package sudokiscte;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of pre-rasterized characters, so that drawing text only copies the
+ * pixels of each glyph's bounding box instead of rendering a whole image.
+ *
+ * Glyphs are keyed by character, font size and text color. The background they
+ * are rasterized against is the mask color used by ColorImage (the inverse of
+ * the text color), so it follows from the text color and needs no key of its
+ * own.
+ *
+ * Lookups take no lock, so that images drawn on many threads at once (eg. the
+ * frames of a replay) do not wait for each other. A glyph missing from the
+ * atlas may be rasterized by more than one thread, and the first one stored is
+ * kept. Once the atlas is full, glyphs (and faces) are evicted in no particular
+ * order.
+ */
+class GlyphAtlas {
+
+	static final String FONT_NAME = "Arial";
+	static final int MAX_GLYPHS = 1024;
+	static final int MAX_FACES = 32;
+
+	private static final GlyphAtlas SHARED = new GlyphAtlas(MAX_GLYPHS, MAX_FACES);
+
+	/**
+	 * Atlas shared by every image.
+	 */
+	static GlyphAtlas shared() {
+		return SHARED;
+	}
+
+	/**
+	 * A rasterized character. Pixels are stored row by row for the bounding box
+	 * only, with 0 marking the pixels that are not part of the glyph. The offsets
+	 * are relative to the pen position on the baseline.
+	 */
+	static class Glyph {
+		final int offsetX, offsetY, width, height, advance;
+		final int[] pixels;
+
+		Glyph(int offsetX, int offsetY, int width, int height, int advance, int[] pixels) {
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.width = width;
+			this.height = height;
+			this.advance = advance;
+			this.pixels = pixels;
+		}
+	}
+
+	/**
+	 * Font and metrics for one text size.
+	 */
+	static class Face {
+		final Font font;
+		final FontMetrics metrics;
+		final int lineHeight; // height of the string bounds
+		final int baseline; // from the top of the text to its baseline
+
+		Face(int size) {
+			font = new Font(FONT_NAME, Font.PLAIN, size);
+
+			Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+			metrics = graphics.getFontMetrics(font);
+			graphics.dispose();
+
+			FontRenderContext frc = new FontRenderContext(null, true, false);
+			lineHeight = (int) Math.round(font.getStringBounds("0", frc).getHeight());
+
+			int fHeight = metrics.getHeight() - metrics.getMaxAscent() + metrics.getMaxDescent() - metrics.getLeading();
+			baseline = lineHeight - fHeight / 2;
+		}
+
+		int stringWidth(String text) {
+			int width = 0;
+			for (int i = 0; i < text.length(); i++)
+				width += metrics.charWidth(text.charAt(i));
+
+			return width;
+		}
+	}
+
+	private final ConcurrentHashMap<Long, Glyph> glyphs = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, Face> faces = new ConcurrentHashMap<>();
+	private final int maxGlyphs;
+	private final int maxFaces;
+
+	GlyphAtlas(int maxGlyphs, int maxFaces) {
+		this.maxGlyphs = maxGlyphs;
+		this.maxFaces = maxFaces;
+	}
+
+	Face face(int size) {
+		Face face = faces.get(size);
+		if (face == null)
+			face = store(faces, size, new Face(size), maxFaces);
+		return face;
+	}
+
+	Glyph glyph(char c, int size, Color textColor) {
+		long key = (long) c << 40 | (long) (size & 0xFFFF) << 24 | (textColor.getR() << 16 | textColor.getG() << 8 | textColor.getB());
+
+		Glyph glyph = glyphs.get(key);
+		if (glyph == null)
+			glyph = store(glyphs, key, rasterize(c, face(size), textColor), maxGlyphs);
+		return glyph;
+	}
+
+	int size() {
+		return glyphs.size();
+	}
+
+	/**
+	 * Stores the value unless another thread stored one first, which is then
+	 * returned instead; evicts other entries while the map has more than max.
+	 */
+	private static <K, V> V store(ConcurrentHashMap<K, V> map, K key, V value, int max) {
+		V stored = map.putIfAbsent(key, value);
+		if (stored != null)
+			return stored;
+
+		for (Iterator<K> keys = map.keySet().iterator(); map.size() > max && keys.hasNext();)
+			if (!keys.next().equals(key))
+				keys.remove();
+		return value;
+	}
+
+	private static Glyph rasterize(char c, Face face, Color textColor) {
+		FontMetrics metrics = face.metrics;
+		int advance = metrics.charWidth(c);
+
+		// Leave room around the advance box for glyphs that overhang it
+		int pad = face.font.getSize() / 2 + 1;
+		int width = advance + 2 * pad;
+		int height = metrics.getMaxAscent() + metrics.getMaxDescent() + 2 * pad;
+		int originX = pad;
+		int originY = pad + metrics.getMaxAscent();
+
+		int maskRgb = (255 - textColor.getR()) << 16 | (255 - textColor.getG()) << 8 | (255 - textColor.getB());
+
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = img.createGraphics();
+		graphics.setColor(new java.awt.Color(maskRgb));
+		graphics.fillRect(0, 0, width, height);
+		graphics.setFont(face.font);
+		graphics.setColor(new java.awt.Color(textColor.getR(), textColor.getG(), textColor.getB()));
+		graphics.drawString(String.valueOf(c), originX, originY);
+		graphics.dispose();
+
+		int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+
+		// Bounding box of the pixels that differ from the mask
+		int minX = width, minY = height, maxX = -1, maxY = -1;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				if ((pixels[y * width + x] & 0xFFFFFF) != maskRgb) {
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+				}
+
+		if (maxX < 0)
+			return new Glyph(0, 0, 0, 0, advance, new int[0]);
+
+		int boxWidth = maxX - minX + 1;
+		int boxHeight = maxY - minY + 1;
+		int[] box = new int[boxWidth * boxHeight];
+		for (int y = 0; y < boxHeight; y++)
+			for (int x = 0; x < boxWidth; x++) {
+				int rgb = pixels[(minY + y) * width + minX + x] & 0xFFFFFF;
+				box[y * boxWidth + x] = rgb == maskRgb ? 0 : 255 << 24 | rgb;
+			}
+
+		return new Glyph(minX - originX, minY - originY, boxWidth, boxHeight, advance, box);
+	}
+}
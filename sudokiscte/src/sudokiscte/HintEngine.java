@@ -0,0 +1,469 @@
+package sudokiscte;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds the next logical step on a board, the way a person would: the candidates
+// of each blank position (the values that do not repeat in its line, column or
+// sector) are narrowed with the techniques below, in order, until some position
+// can take only one value. Candidates are kept up to date as the board changes,
+// and hints are cached by the size and hash of the board
+class HintEngine implements SudokuListener {
+	static final int MAX_CACHED_HINTS = 4096;
+
+	enum Technique {
+		NAKED_SINGLE("candidato único"),
+		HIDDEN_SINGLE("posição única"),
+		NAKED_PAIR("par nu"),
+		HIDDEN_PAIR("par escondido"),
+		POINTING("par apontador"),
+		BOX_LINE("redução setor-linha"),
+		X_WING("X-Wing");
+
+		final String description;
+
+		Technique(String description) {
+			this.description = description;
+		}
+	}
+
+	// A value to place in a position or, when value is 0, candidates to remove
+	// from some positions. A placement comes with the removals that lead to it
+	static class Hint {
+		final Technique technique;
+		final int line;
+		final int column;
+		final int value;
+		final int[] cells; // positions (line * size + column) with candidates to remove
+		final long values; // candidates to remove (bit v for value v)
+		final List<Hint> steps;
+
+		private Hint(Technique technique, int line, int column, int value, int[] cells, long values,
+		    List<Hint> steps) {
+			this.technique = technique;
+			this.line = line;
+			this.column = column;
+			this.value = value;
+			this.cells = cells;
+			this.values = values;
+			this.steps = steps;
+		}
+
+		boolean isPlacement() {
+			return value != 0;
+		}
+
+		@Override
+		public String toString() {
+			if (isPlacement())
+				return "Jogar " + value + " na linha " + line + ", coluna " + column + " (" + technique.description + ")";
+
+			StringBuilder removed = new StringBuilder();
+			for (long v = values; v != 0; v &= v - 1)
+				removed.append(removed.length() == 0 ? "" : ", ").append(Long.numberOfTrailingZeros(v));
+
+			return "Retirar " + removed + " de " + cells.length + " posições (" + technique.description + ")";
+		}
+	}
+
+	// Stands for "no hint" in the cache
+	private static final Hint NO_HINT = new Hint(null, -1, -1, 0, new int[0], 0, Collections.<Hint>emptyList());
+
+	// A board in the cache: its sector size (hashes of boards of different sizes
+	// are not comparable) and its hash
+	private static final class Key {
+		final int sectorSize;
+		final long hash;
+
+		Key(int sectorSize, long hash) {
+			this.sectorSize = sectorSize;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return sectorSize == other.sectorSize && hash == other.hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * sectorSize + Long.hashCode(hash);
+		}
+	}
+
+	// Shared by every engine: hints depend only on the values on the board
+	private static final Map<Key, Hint> cache = new LinkedHashMap<Key, Hint>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Hint> eldest) {
+			return size() > MAX_CACHED_HINTS;
+		}
+	};
+
+	private final SudokuBoard board;
+	private final BoardGeometry geometry;
+
+	// Candidates of each position (0 for positions with a value), kept up to date
+	// through cellChanged
+	private final long[] candidates;
+
+	// Lines, columns and sectors of the position that changed, in cellChanged
+	private final int[] changedUnits = new int[3];
+
+	HintEngine(SudokuBoard board) {
+		this.board = board;
+		this.geometry = BoardGeometry.of(board.getSectorSize());
+		this.candidates = new long[geometry.cells];
+
+		for (int cell = 0; cell < geometry.cells; cell++)
+			refresh(cell);
+
+		board.addListener(this);
+	}
+
+	void detach() {
+		board.removeListener(this);
+	}
+
+	@Override
+	public void cellChanged(SudokuBoard board, int line, int column, int oldValue, int newValue) {
+		int cell = geometry.cell(line, column);
+
+		// Only the positions that share a line, column or sector can change
+		changedUnits[0] = line;
+		changedUnits[1] = geometry.size + column;
+		changedUnits[2] = 2 * geometry.size + geometry.sectorOf[cell];
+		for (int unit : changedUnits)
+			for (int peer : geometry.units[unit])
+				refresh(peer);
+	}
+
+	private void refresh(int cell) {
+		int line = geometry.lineOf[cell];
+		int column = geometry.columnOf[cell];
+		candidates[cell] = board.getValue(line, column) != 0 ? 0 : board.candidates(line, column);
+	}
+
+	// Candidates of the position, as kept by the engine (bit v for value v)
+	long candidates(int line, int column) {
+		return candidates[geometry.cell(line, column)];
+	}
+
+	// The next value that can be placed by logic alone, with the candidate removals
+	// needed to find it; null when there is none (eg. the board has repeated values
+	// or a wrong play, or the techniques are not enough)
+	Hint next() {
+		Key key = new Key(geometry.sectorSize, board.getHash());
+		Hint hint;
+		synchronized (cache) {
+			hint = cache.get(key);
+		}
+
+		// A hint of another board with the same hash is found again
+		if (hint == null || hint != NO_HINT && !fits(hint)) {
+			hint = search();
+			synchronized (cache) {
+				cache.put(key, hint == null ? NO_HINT : hint);
+			}
+		}
+
+		return hint == NO_HINT ? null : hint;
+	}
+
+	// Whether the placement can be made on this board: its position is blank and
+	// its value one of the candidates there
+	private boolean fits(Hint hint) {
+		return hint.line < geometry.size && hint.column < geometry.size
+		    && board.getValue(hint.line, hint.column) == 0
+		    && (candidates(hint.line, hint.column) & 1L << hint.value) != 0;
+	}
+
+	private Hint search() {
+		long[] working = candidates.clone();
+		List<Hint> steps = new ArrayList<>();
+
+		while (true) {
+			if (contradiction(working))
+				return null;
+
+			Hint placement = nakedSingle(working);
+			if (placement == null)
+				placement = hiddenSingle(working);
+			if (placement != null)
+				return new Hint(placement.technique, placement.line, placement.column, placement.value, null, 0,
+				    Collections.unmodifiableList(steps));
+
+			Hint removal = nakedPair(working);
+			if (removal == null)
+				removal = hiddenPair(working);
+			if (removal == null)
+				removal = pointing(working);
+			if (removal == null)
+				removal = boxLine(working);
+			if (removal == null)
+				removal = xWing(working);
+			if (removal == null)
+				return null;
+
+			for (int cell : removal.cells)
+				working[cell] &= ~removal.values;
+			steps.add(removal);
+		}
+	}
+
+	// A blank position with no candidates left
+	private boolean contradiction(long[] working) {
+		for (int cell = 0; cell < geometry.cells; cell++)
+			if (working[cell] == 0 && board.getValue(geometry.lineOf[cell], geometry.columnOf[cell]) == 0)
+				return true;
+
+		return false;
+	}
+
+	private Hint placement(Technique technique, int cell, int value) {
+		return new Hint(technique, geometry.lineOf[cell], geometry.columnOf[cell], value, null, 0, null);
+	}
+
+	// Removes the values from the candidates of the positions that have any of
+	// them, except those in `kept`; null if no position has them
+	private Hint removal(Technique technique, long[] working, int[] positions, long values, int... kept) {
+		int[] cells = new int[positions.length];
+		int count = 0;
+
+		next: for (int cell : positions) {
+			for (int k : kept)
+				if (cell == k)
+					continue next;
+			if ((working[cell] & values) != 0)
+				cells[count++] = cell;
+		}
+
+		if (count == 0)
+			return null;
+
+		int[] removed = new int[count];
+		System.arraycopy(cells, 0, removed, 0, count);
+		return new Hint(technique, -1, -1, 0, removed, values, null);
+	}
+
+	// A position with a single candidate
+	private Hint nakedSingle(long[] working) {
+		for (int cell = 0; cell < geometry.cells; cell++) {
+			long c = working[cell];
+			if (c != 0 && (c & (c - 1)) == 0)
+				return placement(Technique.NAKED_SINGLE, cell, Long.numberOfTrailingZeros(c));
+		}
+
+		return null;
+	}
+
+	// A value with a single position left in a line, column or sector
+	private Hint hiddenSingle(long[] working) {
+		for (int[] unit : geometry.units) {
+			long once = 0;
+			long twice = 0;
+			for (int cell : unit) {
+				twice |= once & working[cell];
+				once |= working[cell];
+			}
+
+			long singles = once & ~twice;
+			if (singles == 0)
+				continue;
+
+			long bit = Long.lowestOneBit(singles);
+			for (int cell : unit)
+				if ((working[cell] & bit) != 0)
+					return placement(Technique.HIDDEN_SINGLE, cell, Long.numberOfTrailingZeros(bit));
+		}
+
+		return null;
+	}
+
+	// Two positions of a unit with the same two candidates: no other position of
+	// the unit can take those values
+	private Hint nakedPair(long[] working) {
+		for (int[] unit : geometry.units)
+			for (int a = 0; a < unit.length; a++) {
+				long pair = working[unit[a]];
+				if (Long.bitCount(pair) != 2)
+					continue;
+
+				for (int b = a + 1; b < unit.length; b++)
+					if (working[unit[b]] == pair) {
+						Hint hint = removal(Technique.NAKED_PAIR, working, unit, pair, unit[a], unit[b]);
+						if (hint != null)
+							return hint;
+					}
+			}
+
+		return null;
+	}
+
+	// Two values that, in a unit, fit only the same two positions: those positions
+	// cannot take any other value
+	private Hint hiddenPair(long[] working) {
+		long[] positions = new long[geometry.size + 1];
+
+		for (int[] unit : geometry.units) {
+			unitPositions(working, unit, positions);
+
+			for (int v = 1; v <= geometry.size; v++) {
+				if (Long.bitCount(positions[v]) != 2)
+					continue;
+
+				for (int w = v + 1; w <= geometry.size; w++)
+					if (positions[w] == positions[v]) {
+						int first = unit[Long.numberOfTrailingZeros(positions[v])];
+						int second = unit[63 - Long.numberOfLeadingZeros(positions[v])];
+						long others = (working[first] | working[second]) & ~(1L << v | 1L << w);
+
+						if (others != 0)
+							return removal(Technique.HIDDEN_PAIR, working, new int[] { first, second }, others);
+					}
+			}
+		}
+
+		return null;
+	}
+
+	// Where each value fits in the unit (bit k for the k-th position of the unit)
+	private void unitPositions(long[] working, int[] unit, long[] positions) {
+		for (int v = 0; v <= geometry.size; v++)
+			positions[v] = 0;
+
+		for (int k = 0; k < unit.length; k++)
+			for (long c = working[unit[k]]; c != 0; c &= c - 1)
+				positions[Long.numberOfTrailingZeros(c)] |= 1L << k;
+	}
+
+	// A value that, in a sector, fits only positions of the same line (or column):
+	// it cannot go in that line (or column) outside the sector
+	private Hint pointing(long[] working) {
+		int size = geometry.size;
+		long[] positions = new long[size + 1];
+
+		for (int sector = 0; sector < size; sector++) {
+			int[] unit = geometry.units[2 * size + sector];
+			unitPositions(working, unit, positions);
+
+			for (int v = 1; v <= size; v++) {
+				if (Long.bitCount(positions[v]) < 2)
+					continue;
+
+				int line = sameUnit(unit, positions[v], geometry.lineOf);
+				int column = sameUnit(unit, positions[v], geometry.columnOf);
+				int[] target = line >= 0 ? geometry.units[line] : column >= 0 ? geometry.units[size + column] : null;
+				if (target == null)
+					continue;
+
+				Hint hint = removal(Technique.POINTING, working, outside(target, sector, geometry.sectorOf), 1L << v);
+				if (hint != null)
+					return hint;
+			}
+		}
+
+		return null;
+	}
+
+	// A value that, in a line (or column), fits only positions of the same
+	// sector: it cannot go anywhere else in that sector
+	private Hint boxLine(long[] working) {
+		int size = geometry.size;
+		long[] positions = new long[size + 1];
+
+		for (int u = 0; u < 2 * size; u++) {
+			int[] unit = geometry.units[u];
+			unitPositions(working, unit, positions);
+
+			for (int v = 1; v <= size; v++) {
+				if (Long.bitCount(positions[v]) < 2)
+					continue;
+
+				int sector = sameUnit(unit, positions[v], geometry.sectorOf);
+				if (sector < 0)
+					continue;
+
+				int[] lineOrColumn = u < size ? geometry.lineOf : geometry.columnOf;
+				int[] rest = outside(geometry.units[2 * size + sector], u % size, lineOrColumn);
+				Hint hint = removal(Technique.BOX_LINE, working, rest, 1L << v);
+				if (hint != null)
+					return hint;
+			}
+		}
+
+		return null;
+	}
+
+	// A value that fits exactly two positions in each of two lines, in the same
+	// two columns: it cannot go in those columns in other lines (and the same,
+	// swapping lines and columns)
+	private Hint xWing(long[] working) {
+		int size = geometry.size;
+		long[][] positions = new long[size][size + 1];
+
+		for (int base = 0; base <= size; base += size) {
+			for (int k = 0; k < size; k++)
+				unitPositions(working, geometry.units[base + k], positions[k]);
+
+			for (int v = 1; v <= size; v++)
+				for (int a = 0; a < size; a++) {
+					if (Long.bitCount(positions[a][v]) != 2)
+						continue;
+
+					for (int b = a + 1; b < size; b++) {
+						if (positions[b][v] != positions[a][v])
+							continue;
+
+						// The crossing units: columns when the pair is in lines, and lines
+						// when it is in columns
+						int cross = size - base;
+						int[] first = geometry.units[cross + Long.numberOfTrailingZeros(positions[a][v])];
+						int[] second = geometry.units[cross + 63 - Long.numberOfLeadingZeros(positions[a][v])];
+						int[] corners = { first[a], first[b], second[a], second[b] };
+
+						int[] both = new int[2 * size];
+						System.arraycopy(first, 0, both, 0, size);
+						System.arraycopy(second, 0, both, size, size);
+
+						Hint hint = removal(Technique.X_WING, working, both, 1L << v, corners);
+						if (hint != null)
+							return hint;
+					}
+				}
+		}
+
+		return null;
+	}
+
+	// The common line, column or sector (per `unitOf`) of the positions of the
+	// unit in the mask, or -1 if they are not all in the same one
+	private static int sameUnit(int[] unit, long mask, int[] unitOf) {
+		int common = unitOf[unit[Long.numberOfTrailingZeros(mask)]];
+		for (long m = mask; m != 0; m &= m - 1)
+			if (unitOf[unit[Long.numberOfTrailingZeros(m)]] != common)
+				return -1;
+
+		return common;
+	}
+
+	// The positions of the unit that are not in the given line, column or sector
+	private static int[] outside(int[] unit, int excluded, int[] unitOf) {
+		int[] cells = new int[unit.length];
+		int count = 0;
+		for (int cell : unit)
+			if (unitOf[cell] != excluded)
+				cells[count++] = cell;
+
+		int[] outside = new int[count];
+		System.arraycopy(cells, 0, outside, 0, count);
+		return outside;
+	}
+}
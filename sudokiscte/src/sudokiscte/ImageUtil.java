@@ -1,16 +1,28 @@
 package sudokiscte;
 
-import java.awt.Font;
-import java.awt.FontMetrics;
-import java.awt.Graphics2D;
-import java.awt.font.FontRenderContext;
-import java.awt.geom.Rectangle2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Vector;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * Utility functions for dealing with images and colors.
@@ -75,6 +87,161 @@ class ImageUtil {
 			throw new IllegalArgumentException("path does represent a file");
 	}
 
+	/**
+	 * Number of image lines handled at a time when pixels are taken out of a
+	 * decoded image or handed to an encoder, so that no full-size temporary copy
+	 * is needed.
+	 */
+	static final int BAND_LINES = 256;
+
+	/**
+	 * Reads an image file (GIF, PNG, JPG). When the file's reader can decode
+	 * straight into packed ARGB integers, the pixels are decoded into the array
+	 * that backs the returned image, with no intermediate copies.
+	 *
+	 * The whole image is decoded at once: the decoders cannot go on from where a
+	 * region of the image ended, so decoding it a band at a time would decode the
+	 * file again for each band (20 times slower for a 2000x8000 PNG).
+	 */
+	static BufferedImage readImage(String imagePath) {
+		File file = new File(imagePath);
+		validateFile(file);
+		try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext())
+				throw new IllegalArgumentException("unsupported image format: " + imagePath);
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+
+				if (offersType(reader, BufferedImage.TYPE_INT_ARGB)) {
+					int width = reader.getWidth(0);
+					int height = reader.getHeight(0);
+					param.setDestination(wrapPixels(new int[width * height], width, height));
+				}
+
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+	}
+
+	private static boolean offersType(ImageReader reader, int imageType) throws IOException {
+		Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+		while (types.hasNext())
+			if (types.next().getBufferedImageType() == imageType)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Creates an image (of type TYPE_INT_ARGB) that shares the given pixel array,
+	 * encoded as in the encodeRgb(...) method, line after line.
+	 */
+	static BufferedImage wrapPixels(int[] pixels, int width, int height) {
+		DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+		return wrapPixels(pixels, width, height, model);
+	}
+
+	/**
+	 * Same as wrapPixels(...), but the image (of type TYPE_INT_RGB) ignores the
+	 * alpha component, as needed by encoders without transparency (JPG).
+	 */
+	static BufferedImage wrapOpaquePixels(int[] pixels, int width, int height) {
+		return wrapPixels(pixels, width, height, new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF));
+	}
+
+	private static BufferedImage wrapPixels(int[] pixels, int width, int height, DirectColorModel model) {
+		if (pixels.length < width * height)
+			throw new IllegalArgumentException("not enough pixels for a " + width + "x" + height + " image");
+
+		DataBufferInt buffer = new DataBufferInt(pixels, width * height);
+		WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, model.getMasks(), null);
+		return new BufferedImage(model, raster, false, null);
+	}
+
+	/**
+	 * Obtains the pixels of an image, line after line, encoded as in the
+	 * encodeRgb(...) method. Images that already store packed integers give away
+	 * their own array, otherwise pixels are converted a band of lines at a time.
+	 */
+	static int[] argbPixels(BufferedImage img) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+
+		int[] pixels = packedPixels(img);
+		if (pixels != null) {
+			for (int i = 0; i < width * height; i++)
+				pixels[i] |= 0xFF000000;
+			return pixels;
+		}
+
+		pixels = new int[width * height];
+		for (int y = 0; y < height; y += BAND_LINES) {
+			int lines = Math.min(BAND_LINES, height - y);
+			img.getRGB(0, y, width, lines, pixels, y * width, width);
+			for (int i = y * width; i < (y + lines) * width; i++)
+				pixels[i] |= 0xFF000000;
+		}
+		return pixels;
+	}
+
+	// The array behind a TYPE_INT_ARGB or TYPE_INT_RGB image, if it holds exactly
+	// its pixels, line after line
+	private static int[] packedPixels(BufferedImage img) {
+		if (img.getType() != BufferedImage.TYPE_INT_ARGB && img.getType() != BufferedImage.TYPE_INT_RGB)
+			return null;
+
+		WritableRaster raster = img.getRaster();
+		if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+		    || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel))
+			return null;
+
+		SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+		if (model.getScanlineStride() != img.getWidth() || buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+			return null;
+
+		return buffer.getData();
+	}
+
+	/**
+	 * Receives the pixels of an image a band of lines at a time: the pixel at
+	 * (x, firstLine + k) is pixels[offset + k * width + x], encoded as in the
+	 * encodeRgb(...) method, except that the alpha component may be missing.
+	 */
+	private interface BandVisitor {
+		void visit(int[] pixels, int offset, int firstLine, int lines);
+	}
+
+	/**
+	 * Hands the pixels of an image to the visitor a band of BAND_LINES lines at a
+	 * time. Images that store packed integers hand out bands of their own array;
+	 * otherwise each band is converted into a buffer reused for the next one.
+	 */
+	private static void forEachBand(BufferedImage img, BandVisitor visitor) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+
+		int[] pixels = packedPixels(img);
+		int[] band = pixels != null ? null : new int[width * Math.min(BAND_LINES, height)];
+		for (int y = 0; y < height; y += BAND_LINES) {
+			int lines = Math.min(BAND_LINES, height - y);
+			if (pixels != null)
+				visitor.visit(pixels, y * width, y, lines);
+			else {
+				img.getRGB(0, y, width, lines, band, 0, width);
+				visitor.visit(band, 0, y, lines);
+			}
+		}
+	}
+
 	/**
 	 * Constructs a boolean matrix representing the pixels of an image file (GIF,
 	 * PNG, JPG) in binary mode.
@@ -86,26 +253,20 @@ class ImageUtil {
 	 * value set to true, whereas false otherwise.
 	 */
 	static boolean[][] readBinaryImage(String imagePath) {
-		File file = new File(imagePath);
-		validateFile(file);
-		try {
-			BufferedImage img = ImageIO.read(file);
-			int[] pixels = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
-			boolean[][] data = new boolean[img.getHeight()][img.getWidth()];
-			int i = 0;
-			for (int y = 0; y < data.length; y++) {
-				for (int x = 0; x < data[y].length; x++) {
+		BufferedImage img = readImage(imagePath);
+		int width = img.getWidth();
+		int height = img.getHeight();
+
+		boolean[][] data = new boolean[height][width];
+		forEachBand(img, (pixels, offset, y, lines) -> {
+			int i = offset;
+			for (int line = y; line < y + lines; line++)
+				for (int x = 0; x < width; x++) {
 					int v = pixels[i++];
-					int r = (v >> 16) & 0xFF;
-					int g = (v >> 8) & 0xFF;
-					int b = v & 0xFF;
-					data[y][x] = luminance(r, g, b) >= 128;
+					data[line][x] = luminance((v >> 16) & 0xFF, (v >> 8) & 0xFF, v & 0xFF) >= 128;
 				}
-			}
-			return data;
-		} catch (IOException e) {
-			throw new IllegalArgumentException(e.getMessage());
-		}
+		});
+		return data;
 	}
 
 	/**
@@ -120,42 +281,63 @@ class ImageUtil {
 	 * 00000000 00000000 00000000 00000000 alpha red green blue
 	 */
 	static int[][] readColorImage(String imagePath) {
-		File file = new File(imagePath);
-		validateFile(file);
-		try {
-			BufferedImage img = ImageIO.read(file);
-			int[] pixels = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
-			int[][] data = new int[img.getHeight()][img.getWidth()];
-			int i = 0;
-			for (int y = 0; y < data.length; y++) {
-				for (int x = 0; x < data[y].length; x++) {
-					int v = pixels[i++];
-					int r = (v >> 16) & 0xFF;
-					int g = (v >> 8) & 0xFF;
-					int b = v & 0xFF;
-					data[y][x] = encodeRgb(r, g, b);
-				}
+		BufferedImage img = readImage(imagePath);
+		int width = img.getWidth();
+
+		int[][] data = new int[img.getHeight()][width];
+		forEachBand(img, (pixels, offset, y, lines) -> {
+			for (int line = y; line < y + lines; line++) {
+				int[] row = data[line];
+				System.arraycopy(pixels, offset + (line - y) * width, row, 0, width);
+				for (int x = 0; x < width; x++)
+					row[x] |= 0xFF000000;
 			}
-			return data;
-		} catch (IOException e) {
-			throw new IllegalArgumentException(e.getMessage());
-		}
+		});
+		return data;
 	}
 
 	/**
 	 * Writes an image to a file given its pixel data and an image format (gif, jpg,
 	 * png). Pixel values are expected to be encoded as in the encodeRgb(...)
-	 * method.
+	 * method. PNG files are encoded a band of lines at a time, straight from the
+	 * matrix; the other encoders need the whole image, which is copied once.
 	 */
 	static void writeImage(int[][] data, String path, String format) {
+		if (format.equals("png")) {
+			writeImage(new BandedImage(data), path, format);
+			return;
+		}
+
+		int width = data[0].length;
+		int[] pixels = new int[width * data.length];
+		for (int y = 0; y < data.length; y++)
+			System.arraycopy(data[y], 0, pixels, y * width, width);
+
+		writeImage(pixels, width, data.length, path, format);
+	}
+
+	/**
+	 * Writes a ColorImage to a file in the given image format (gif, jpg, png).
+	 */
+	static void writeImage(ColorImage img, String path, String format) {
+		writeImage(img.getPixels(), img.getWidth(), img.getHeight(), path, format);
+	}
+
+	/**
+	 * Writes pixels given line after line, encoded as in the encodeRgb(...)
+	 * method. The encoder reads them straight from the array, without copies.
+	 */
+	static void writeImage(int[] pixels, int width, int height, String path, String format) {
 		if (!format.matches("gif|jpg|png"))
 			throw new IllegalArgumentException("invalid format: " + format + " (valid values: gif, jpg, png)");
 
-		BufferedImage img = new BufferedImage(data[0].length, data.length, BufferedImage.TYPE_INT_ARGB);
-		for (int y = 0; y < data.length; y++)
-			for (int x = 0; x < data[y].length; x++)
-				img.setRGB(x, y, data[y][x]);
+		BufferedImage img = format.equals("jpg") ? wrapOpaquePixels(pixels, width, height)
+		    : wrapPixels(pixels, width, height);
 
+		writeImage(img, path, format);
+	}
+
+	private static void writeImage(RenderedImage img, String path, String format) {
 		File file = new File(path);
 		try {
 			ImageIO.write(img, format, file);
@@ -164,50 +346,146 @@ class ImageUtil {
 		}
 	}
 
-	static int[][] createColorImageWithText(int width, int height, Color backgroundColor, int textX, int textY,
-	    String text, int textSize, Color textColor, boolean isCentered) {
-		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	/**
+	 * An image (with the layout of TYPE_INT_ARGB) over a matrix of pixels, one
+	 * array per line, split in tiles of BAND_LINES lines. The pixels of a tile,
+	 * or of any other area asked for, are copied out of the matrix only when the
+	 * encoder asks for them.
+	 */
+	private static class BandedImage implements RenderedImage {
+		private final int[][] data;
+		private final int width;
+		private final int height;
+		private final DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+		private final SampleModel sampleModel;
+
+		BandedImage(int[][] data) {
+			this.data = data;
+			this.width = data[0].length;
+			this.height = data.length;
+			this.sampleModel = model.createCompatibleSampleModel(width, Math.min(BAND_LINES, height));
+		}
+
+		@Override
+		public Raster getData(Rectangle rect) {
+			Rectangle area = rect.intersection(new Rectangle(width, height));
+			int[] pixels = new int[width * area.height];
+			for (int line = 0; line < area.height; line++)
+				System.arraycopy(data[area.y + line], 0, pixels, line * width, width);
+
+			WritableRaster lines = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width,
+			    area.height, width, model.getMasks(), new Point(0, area.y));
+			if (area.x == 0 && area.width == width)
+				return lines;
+			return lines.createWritableChild(area.x, area.y, area.width, area.height, area.x, area.y, null);
+		}
+
+		@Override
+		public Raster getData() {
+			return getData(new Rectangle(width, height));
+		}
+
+		@Override
+		public Raster getTile(int tileX, int tileY) {
+			int y = tileY * BAND_LINES;
+			return getData(new Rectangle(0, y, width, Math.min(BAND_LINES, height - y)));
+		}
 
-		Graphics2D graphics = img.createGraphics();
-		graphics.setColor(new java.awt.Color(backgroundColor.getR(), backgroundColor.getG(), backgroundColor.getB()));
-		graphics.fillRect(0, 0, width, height);
+		@Override
+		public WritableRaster copyData(WritableRaster raster) {
+			if (raster == null)
+				raster = model.createCompatibleWritableRaster(width, height);
 
-		Font font = new Font("Arial", Font.PLAIN, textSize);
+			Rectangle area = raster.getBounds().intersection(new Rectangle(width, height));
+			for (int line = area.y; line < area.y + area.height; line++)
+				raster.setDataElements(area.x, line, area.width, 1,
+				    Arrays.copyOfRange(data[line], area.x, area.x + area.width));
+			return raster;
+		}
 
-		graphics.setFont(font);
-		graphics.setColor(new java.awt.Color(textColor.getR(), textColor.getG(), textColor.getB()));
+		@Override
+		public Vector<RenderedImage> getSources() {
+			return null;
+		}
 
-		FontMetrics fontMetrics = graphics.getFontMetrics();
+		@Override
+		public Object getProperty(String name) {
+			return Image.UndefinedProperty;
+		}
 
-		FontRenderContext frc = new FontRenderContext(null, true, false);
+		@Override
+		public String[] getPropertyNames() {
+			return null;
+		}
 
-		Rectangle2D r2D = font.getStringBounds(text, frc);
-		int rWidth = (int) Math.round(r2D.getWidth());
-		int rHeight = (int) Math.round(r2D.getHeight());
-		int rX = Math.round(textX);
-		int rY = Math.round(textY);
+		@Override
+		public ColorModel getColorModel() {
+			return model;
+		}
 
-		int newX = textX - (isCentered ? (rWidth / 2) : 0);
-		int newY = textY - (isCentered ? (rHeight / 2) : 0);
+		@Override
+		public SampleModel getSampleModel() {
+			return sampleModel;
+		}
 
-		int fHeight = fontMetrics.getHeight() - fontMetrics.getMaxAscent() + fontMetrics.getMaxDescent()
-		    - fontMetrics.getLeading();
+		@Override
+		public int getWidth() {
+			return width;
+		}
 
-		graphics.drawString(text, newX, newY + rHeight - fHeight / 2);
+		@Override
+		public int getHeight() {
+			return height;
+		}
 
-		int[] pixels = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
-		int[][] data = new int[img.getHeight()][img.getWidth()];
-		int i = 0;
-		for (int y = 0; y < data.length; y++) {
-			for (int x = 0; x < data[y].length; x++) {
-				int v = pixels[i++];
-				int r = (v >> 16) & 0xFF;
-				int g = (v >> 8) & 0xFF;
-				int b = v & 0xFF;
-				data[y][x] = encodeRgb(r, g, b);
-			}
+		@Override
+		public int getMinX() {
+			return 0;
+		}
+
+		@Override
+		public int getMinY() {
+			return 0;
+		}
+
+		@Override
+		public int getNumXTiles() {
+			return 1;
+		}
+
+		@Override
+		public int getNumYTiles() {
+			return (height + BAND_LINES - 1) / BAND_LINES;
+		}
+
+		@Override
+		public int getMinTileX() {
+			return 0;
+		}
+
+		@Override
+		public int getMinTileY() {
+			return 0;
+		}
+
+		@Override
+		public int getTileWidth() {
+			return width;
+		}
+
+		@Override
+		public int getTileHeight() {
+			return Math.min(BAND_LINES, height);
+		}
+
+		@Override
+		public int getTileGridXOffset() {
+			return 0;
 		}
-		return data;
 
+		@Override
+		public int getTileGridYOffset() {
+			return 0;
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package sudokiscte;
+
+import java.util.Arrays;
+
+// History of the moves made on a board, for undo and redo. Each move is packed
+// in an int: line, column, value before and value after the move, VALUE_BITS
+// each (boards up to 49x49 need 6). Moves before the position have been made;
+// moves from the position on have been undone, and can be redone until a new
+// move is recorded
+class MoveJournal {
+	static final int VALUE_BITS = 6;
+	static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+	static final int NO_MOVE = -1;
+
+	private int[] moves;
+	private int size = 0;
+	private int position = 0;
+
+	MoveJournal(int capacity) {
+		this.moves = new int[Math.max(capacity, 1)];
+	}
+
+	static int pack(int line, int column, int oldValue, int newValue) {
+		return line << 3 * VALUE_BITS | column << 2 * VALUE_BITS | oldValue << VALUE_BITS | newValue;
+	}
+
+	static int line(int move) {
+		return move >>> 3 * VALUE_BITS;
+	}
+
+	static int column(int move) {
+		return (move >>> 2 * VALUE_BITS) & VALUE_MASK;
+	}
+
+	static int oldValue(int move) {
+		return (move >>> VALUE_BITS) & VALUE_MASK;
+	}
+
+	static int newValue(int move) {
+		return move & VALUE_MASK;
+	}
+
+	// Records a move made, dropping the moves that could be redone
+	void record(int move) {
+		if (position == moves.length)
+			moves = Arrays.copyOf(moves, moves.length * 2);
+
+		moves[position++] = move;
+		size = position;
+	}
+
+	// Steps back over the last move made and returns it (NO_MOVE at the start)
+	int undo() {
+		return position == 0 ? NO_MOVE : moves[--position];
+	}
+
+	// Steps forward over the next move undone and returns it (NO_MOVE at the end)
+	int redo() {
+		return position == size ? NO_MOVE : moves[position++];
+	}
+
+	// The last move made, NO_MOVE if there is none
+	int last() {
+		return position == 0 ? NO_MOVE : moves[position - 1];
+	}
+
+	int get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Jogada " + index + " não existe");
+
+		return moves[index];
+	}
+
+	// Moves recorded, made or undone
+	int size() {
+		return size;
+	}
+
+	// Moves made
+	int position() {
+		return position;
+	}
+
+	void clear() {
+		size = position = 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(moves, size);
+	}
+
+	// Replaces the history (the position being how many of the moves were made)
+	void restore(int[] history, int position) {
+		if (position < 0 || position > history.length)
+			throw new IllegalArgumentException("Posição inválida no histórico: " + position);
+
+		this.moves = Arrays.copyOf(history, Math.max(history.length, moves.length));
+		this.size = history.length;
+		this.position = position;
+	}
+}
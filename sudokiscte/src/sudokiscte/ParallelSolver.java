@@ -0,0 +1,142 @@
+package sudokiscte;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Work-stealing version of BitmaskSolver for large boards (16x16, 25x25, ...).
+// Near the root, the search forks one task per candidate of the blank position
+// with the fewest candidates, so the tree is split where it branches the least;
+// deeper down, each task searches its subtree sequentially. All tasks share the
+// solution count and a stop flag, raised once the limit is reached
+class ParallelSolver implements SudokuSolver {
+	// Tasks are only forked this close to the root, and while there is enough of
+	// the board left for the subtree to be worth a task of its own
+	static final int MAX_SPLIT_DEPTH = 12;
+	static final int MIN_SPLIT_BLANKS = 20;
+
+	private final ForkJoinPool pool;
+
+	ParallelSolver() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	ParallelSolver(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public Result search(int[][] board, long limit, SolutionVisitor visitor) {
+		BitmaskSolver.State state = BitmaskSolver.State.of(BoardGeometry.ofBoard(board), board);
+		if (state == null)
+			return new Result(null, 0, 0);
+
+		Shared shared = new Shared(limit, visitor);
+		pool.invoke(new Branch(shared, state, 0));
+
+		return new Result(shared.first, shared.solutions, shared.nodes.sum());
+	}
+
+	// What the tasks of one search share
+	private static class Shared {
+		final long limit;
+		final SolutionVisitor visitor;
+		final LongAdder nodes = new LongAdder();
+
+		volatile boolean stopped;
+		int[][] first;
+		long solutions;
+
+		Shared(long limit, SolutionVisitor visitor) {
+			this.limit = limit;
+			this.visitor = visitor;
+		}
+
+		// Solutions are handed to the visitor one at a time; returns true when the
+		// search has to stop
+		synchronized boolean found(int[][] solution) {
+			if (stopped)
+				return true;
+
+			solutions++;
+			if (first == null)
+				first = solution;
+
+			if ((visitor != null && !visitor.visit(first == solution ? copy(solution) : solution))
+			    || solutions >= limit)
+				stopped = true;
+
+			return stopped;
+		}
+
+		private static int[][] copy(int[][] board) {
+			int[][] copy = new int[board.length][];
+			for (int i = 0; i < board.length; i++)
+				copy[i] = board[i].clone();
+			return copy;
+		}
+	}
+
+	private static class Branch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Shared shared;
+		private final BitmaskSolver.State state;
+		private final int depth;
+
+		Branch(Shared shared, BitmaskSolver.State state, int depth) {
+			this.shared = shared;
+			this.state = state;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			if (shared.stopped)
+				return;
+
+			if (depth >= MAX_SPLIT_DEPTH || state.blanks < MIN_SPLIT_BLANKS) {
+				searchSequentially();
+				return;
+			}
+
+			shared.nodes.increment();
+			if (!state.propagate())
+				return;
+
+			if (state.blanks == 0) {
+				shared.found(state.toBoard());
+				return;
+			}
+
+			int cell = state.selectCell();
+			int[] values = state.candidateValues(cell, null);
+			Branch[] children = new Branch[values.length];
+
+			for (int k = 0; k < values.length; k++) {
+				BitmaskSolver.State child = state.copy();
+				child.place(cell, values[k]);
+				children[k] = new Branch(shared, child, depth + 1);
+			}
+
+			invokeAll(children);
+		}
+
+		private void searchSequentially() {
+			BitmaskSolver.Search search = new BitmaskSolver.Search(Long.MAX_VALUE, null, null) {
+				@Override
+				boolean cancelled() {
+					return shared.stopped;
+				}
+
+				@Override
+				boolean found(BitmaskSolver.State state) {
+					return shared.found(state.toBoard());
+				}
+			};
+
+			search.run(state);
+			shared.nodes.add(search.nodes);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package sudokiscte;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Puzzles seen so far, kept once for each class of equivalent puzzles (see
+// Canonicalizer). Puzzles are numbered from 0 in the order they are added (or
+// given their number, eg. their place in a file), from any number of threads,
+// and each is told the number of the first equivalent puzzle added. Only boards
+// up to 9x9 can be indexed: larger ones have no canonical form
+class PuzzleIndex {
+	private final ConcurrentHashMap<BoardSnapshot, Long> numbers = new ConcurrentHashMap<>();
+	private final AtomicLong added = new AtomicLong();
+
+	// Number of the puzzle, or of the first equivalent puzzle if there was one
+	long add(int[][] puzzle) {
+		BoardSnapshot key = key(puzzle);
+		return first(key, added.getAndIncrement());
+	}
+
+	// Adds a puzzle by its canonical form (see key), with the given number
+	long add(BoardSnapshot key, long number) {
+		added.incrementAndGet();
+		return first(key, number);
+	}
+
+	private long first(BoardSnapshot key, long number) {
+		Long first = numbers.putIfAbsent(key, number);
+		return first == null ? number : first;
+	}
+
+	// Number of the first equivalent puzzle added, or -1 if there was none
+	long find(int[][] puzzle) {
+		Long number = numbers.get(key(puzzle));
+		return number == null ? -1 : number;
+	}
+
+	// Number of classes of equivalent puzzles
+	int size() {
+		return numbers.size();
+	}
+
+	long added() {
+		return added.get();
+	}
+
+	static boolean canIndex(int[][] puzzle) {
+		return BoardGeometry.ofBoard(puzzle).sectorSize <= Canonicalizer.MAX_SECTOR_SIZE;
+	}
+
+	// The canonical form of the puzzle
+	static BoardSnapshot key(int[][] puzzle) {
+		int sectorSize = BoardGeometry.ofBoard(puzzle).sectorSize;
+		if (sectorSize > Canonicalizer.MAX_SECTOR_SIZE)
+			throw new IllegalArgumentException("Só tabuleiros até 9x9 têm forma canónica");
+
+		return BoardSnapshot.of(Canonicalizer.of(sectorSize).canonical(puzzle));
+	}
+}
@@ -0,0 +1,388 @@
+package sudokiscte;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Reads collections of puzzles, one after the other, in either of two layouts:
+// - the .sud layout, with the values of each line separated by spaces (one
+// board line per file line, usually), blank positions being 0 or '.'
+// - the one-line layout, with every value of the board as a single character
+// ('1' to '9', then 'A', 'B', ... for larger boards, and '0' or '.' for blank
+// positions), one puzzle per line
+// The layout is told apart puzzle by puzzle, from its first line. Puzzles are
+// parsed as they are needed, so that collections of any length can be read
+class PuzzleReader {
+	// Bytes of a file mapped at a time, and bytes that must be left in what is
+	// mapped (or read) for a whole puzzle to be parsed without remapping
+	static final int WINDOW_BYTES = 1 << 26;
+	static final int MAX_PUZZLE_BYTES = 1 << 16;
+
+	// Parts of a file smaller than this are not split for parallel parsing
+	static final int MIN_SPLIT_BYTES = 1 << 16;
+
+	// Puzzles of the file, in order; the stream can be made parallel, the file
+	// being split at puzzle boundaries (new lines in the one-line layout, blank
+	// lines between puzzles in the .sud layout). It should be closed after use
+	static Stream<int[][]> read(String fileName) {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			throw new IllegalArgumentException("ficheiro " + fileName + " não encontrado");
+		} catch (IOException e) {
+			throw new IllegalArgumentException("ficheiro " + fileName + " não pode ser lido");
+		}
+
+		try {
+			MappedPuzzles puzzles = new MappedPuzzles(channel, 0, channel.size());
+			return StreamSupport.stream(puzzles, false).onClose(() -> close(channel));
+		} catch (IOException e) {
+			close(channel);
+			throw new IllegalArgumentException("ficheiro " + fileName + " não pode ser lido");
+		}
+	}
+
+	// Puzzles read from any source, in order; such a stream is not split
+	static Stream<int[][]> read(InputStream in) {
+		return StreamSupport.stream(new StreamedPuzzles(Channels.newChannel(in)), false).onClose(() -> close(in));
+	}
+
+	// First puzzle of the file
+	static int[][] readFirst(String fileName) {
+		try (Stream<int[][]> puzzles = read(fileName)) {
+			return puzzles.findFirst()
+			    .orElseThrow(() -> new IllegalArgumentException("O ficheiro " + fileName + " não tem um tabuleiro válido"));
+		}
+	}
+
+	private static void close(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Whether boards with this number of lines can be played (4, 9, 16, ..., 49)
+	static boolean validSize(int size) {
+		int sectorSize = (int) Math.round(Math.sqrt(size));
+		return sectorSize * sectorSize == size && sectorSize >= 2 && sectorSize <= BoardGeometry.MAX_SECTOR_SIZE;
+	}
+
+	private static boolean isSpace(int b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	// Value of each character of the one-line layout, -1 for the other characters
+	private static final byte[] CHAR_VALUES = new byte[256];
+
+	static {
+		Arrays.fill(CHAR_VALUES, (byte) -1);
+		CHAR_VALUES['.'] = 0;
+		for (int c = '0'; c <= '9'; c++)
+			CHAR_VALUES[c] = (byte) (c - '0');
+		for (int c = 'A'; c <= 'Z'; c++)
+			CHAR_VALUES[c] = CHAR_VALUES[c + 'a' - 'A'] = (byte) (c - 'A' + 10);
+	}
+
+	// Parsing of the puzzles from a buffer, which the subclasses keep filled with
+	// the bytes that follow
+	private abstract static class Puzzles implements Spliterator<int[][]> {
+		ByteBuffer buffer;
+
+		// Makes sure the buffer holds a whole puzzle, unless the input ends before
+		abstract void fill() throws IOException;
+
+		// Position in the input of a position in the buffer, for error messages
+		abstract long offsetOf(int index);
+
+		@Override
+		public boolean tryAdvance(Consumer<? super int[][]> action) {
+			int[][] puzzle;
+			try {
+				puzzle = next();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			if (puzzle == null)
+				return false;
+
+			action.accept(puzzle);
+			return true;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+
+		private int[][] next() throws IOException {
+			fill();
+
+			int limit = buffer.limit();
+			int start = buffer.position();
+			while (start < limit && isSpace(buffer.get(start)))
+				start++;
+
+			if (start == limit) {
+				buffer.position(limit);
+				return null;
+			}
+
+			// A line with a single run of characters is a puzzle in the one-line layout
+			int k = start;
+			while (k < limit && !isSpace(buffer.get(k)))
+				k++;
+			int tokenEnd = k;
+			while (k < limit && buffer.get(k) != '\n' && isSpace(buffer.get(k)))
+				k++;
+
+			if (k == limit || buffer.get(k) == '\n')
+				return parseOneLine(start, tokenEnd - start);
+
+			// Otherwise, values in the first line of the puzzle
+			int tokens = 1;
+			boolean inToken = false;
+			for (; k < limit && buffer.get(k) != '\n'; k++) {
+				boolean space = isSpace(buffer.get(k));
+				if (!space && !inToken)
+					tokens++;
+				inToken = !space;
+			}
+
+			// In the .sud layout, a line has a board line or, less commonly, the
+			// whole board
+			int size = validSize(tokens) ? tokens : (int) Math.round(Math.sqrt(tokens));
+			if (!validSize(size) || (size != tokens && size * size != tokens))
+				throw invalid(start);
+
+			return parseValues(start, size);
+		}
+
+		private int[][] parseOneLine(int start, int length) {
+			int size = (int) Math.round(Math.sqrt(length));
+			if (size * size != length || !validSize(size))
+				throw invalid(start);
+
+			int[][] puzzle = new int[size][size];
+			int k = start;
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++) {
+					int value = CHAR_VALUES[buffer.get(k) & 0xff];
+					if (value < 0 || value > size)
+						throw invalid(k);
+
+					puzzle[i][j] = value;
+					k++;
+				}
+
+			buffer.position(k);
+			return puzzle;
+		}
+
+		private int[][] parseValues(int start, int size) {
+			int[][] puzzle = new int[size][size];
+			int limit = buffer.limit();
+			int k = start;
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++) {
+					while (k < limit && isSpace(buffer.get(k)))
+						k++;
+					if (k == limit)
+						throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
+
+					int value = 0;
+					if (buffer.get(k) == '.')
+						k++;
+					else {
+						int digits = k;
+						for (int b; k < limit && (b = buffer.get(k)) >= '0' && b <= '9'; k++)
+							value = value * 10 + (b - '0');
+						if (k == digits)
+							throw invalid(k);
+					}
+
+					if (value > size || (k < limit && !isSpace(buffer.get(k))))
+						throw invalid(k);
+
+					puzzle[i][j] = value;
+				}
+
+			buffer.position(k);
+			return puzzle;
+		}
+
+		private IllegalArgumentException invalid(int index) {
+			return new IllegalArgumentException("Tabuleiro inválido no byte " + offsetOf(index) + " do ficheiro");
+		}
+	}
+
+	// Puzzles of a part of a file, which is mapped a window at a time
+	private static class MappedPuzzles extends Puzzles {
+		private final FileChannel channel;
+		private long windowStart;
+		private final long end;
+
+		MappedPuzzles(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.windowStart = start;
+			this.end = end;
+		}
+
+		private long position() {
+			return buffer == null ? windowStart : windowStart + buffer.position();
+		}
+
+		@Override
+		void fill() throws IOException {
+			if (buffer != null && (buffer.remaining() >= MAX_PUZZLE_BYTES || windowStart + buffer.limit() == end))
+				return;
+
+			long position = position();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(end - position, WINDOW_BYTES));
+			windowStart = position;
+		}
+
+		@Override
+		long offsetOf(int index) {
+			return windowStart + index;
+		}
+
+		// Leaves the second half to this spliterator, from the first puzzle boundary
+		// after its middle
+		@Override
+		public Spliterator<int[][]> trySplit() {
+			long position = position();
+			if (end - position < 2 * MIN_SPLIT_BYTES)
+				return null;
+
+			long middle;
+			try {
+				middle = boundaryAfter(position, position + (end - position) / 2);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (middle < 0)
+				return null;
+
+			MappedPuzzles prefix = new MappedPuzzles(channel, position, middle);
+			buffer = null;
+			windowStart = middle;
+			return prefix;
+		}
+
+		// Start of the first puzzle after the given position, or -1 if there is
+		// none before the end
+		private long boundaryAfter(long position, long from) throws IOException {
+			boolean oneLine = firstLineTokens(position) == 1;
+
+			// New lines since the last value: puzzles start after one in the one-line
+			// layout, and after two (a blank line) in the .sud layout
+			int newLines = 0;
+			ByteBuffer chunk = ByteBuffer.allocate(MAX_PUZZLE_BYTES);
+			for (long offset = from; offset < end; offset += chunk.limit()) {
+				chunk.clear();
+				if (end - offset < chunk.capacity())
+					chunk.limit((int) (end - offset));
+				if (channel.read(chunk, offset) <= 0)
+					return -1;
+				chunk.flip();
+
+				for (int k = 0; k < chunk.limit(); k++) {
+					byte b = chunk.get(k);
+					if (b == '\n')
+						newLines++;
+					else if (!isSpace(b)) {
+						if (newLines >= (oneLine ? 1 : 2))
+							return offset + k;
+						newLines = 0;
+					}
+				}
+			}
+
+			return -1;
+		}
+
+		// Values (or characters) in the first non-blank line from the position
+		private int firstLineTokens(long position) throws IOException {
+			ByteBuffer chunk = ByteBuffer.allocate(MAX_PUZZLE_BYTES);
+			channel.read(chunk, position);
+			chunk.flip();
+
+			int tokens = 0;
+			boolean inToken = false;
+			for (int k = 0; k < chunk.limit(); k++) {
+				byte b = chunk.get(k);
+				if (b == '\n' && tokens > 0)
+					break;
+
+				boolean space = isSpace(b);
+				if (!space && !inToken)
+					tokens++;
+				inToken = !space;
+			}
+
+			return tokens;
+		}
+
+		@Override
+		public long estimateSize() {
+			// About as many bytes as values in a 9x9 puzzle, in either layout
+			return (end - position()) / (SudokuAux.BOARD_SIZE * SudokuAux.BOARD_SIZE) + 1;
+		}
+	}
+
+	// Puzzles of a stream, read into a buffer that is refilled as it is parsed
+	private static class StreamedPuzzles extends Puzzles {
+		private final ReadableByteChannel in;
+		private long bufferStart = 0;
+		private boolean ended = false;
+
+		StreamedPuzzles(ReadableByteChannel in) {
+			this.in = in;
+			this.buffer = ByteBuffer.allocate(4 * MAX_PUZZLE_BYTES);
+			this.buffer.limit(0);
+		}
+
+		@Override
+		void fill() throws IOException {
+			if (ended || buffer.remaining() >= MAX_PUZZLE_BYTES)
+				return;
+
+			bufferStart += buffer.position();
+			buffer.compact();
+			while (buffer.hasRemaining() && !ended)
+				ended = in.read(buffer) < 0;
+			buffer.flip();
+		}
+
+		@Override
+		long offsetOf(int index) {
+			return bufferStart + index;
+		}
+
+		@Override
+		public Spliterator<int[][]> trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package sudokiscte;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+// Replays of games as images: one frame for each state of the board, from before
+// the first move made to after the last, as an animated GIF (that loops) or tiled
+// into a sprite sheet. Frames are rendered in parallel, in runs of consecutive
+// moves, each run by a renderer of its own that only redraws the cells a move
+// changed; runs are handed back in order. A GIF frame has only the part of the
+// board that changed from the frame before, drawn over it
+class ReplayExporter {
+	// Hundredths of a second between frames of a GIF
+	static final int DEFAULT_FRAME_DELAY = 50;
+
+	// Frames rendered by a run (at least), so that short replays are not split
+	static final int MIN_FRAMES_PER_RUN = 32;
+
+	private final Executor executor;
+
+	ReplayExporter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	ReplayExporter(Executor executor) {
+		this.executor = executor;
+	}
+
+	// Given a renderer brought up to the state of a frame
+	private interface FrameConsumer<T> {
+		void accept(int frame, SudokuRenderer renderer, List<T> output);
+	}
+
+	// Part of a frame (the whole of the first), with where it goes in the image
+	private static final class Delta {
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		final int[] pixels;
+
+		// A frame with no change still has a pixel
+		Delta(ColorImage img, int[] area) {
+			this.x = area[0];
+			this.y = area[1];
+			this.width = Math.max(area[2], 1);
+			this.height = Math.max(area[3], 1);
+			this.pixels = new int[width * height];
+
+			for (int line = 0; line < height; line++)
+				System.arraycopy(img.getPixels(), (y + line) * img.getWidth() + x, pixels, line * width, width);
+		}
+	}
+
+	// What a replay needs of the game, taken on the thread that plays it: boards
+	// for the runs are rebuilt from this, and the game is left alone
+	private static final class Replay {
+		final BoardSnapshot initialBoard;
+		final BoardSnapshot board;
+		final int[] history;
+		final int position;
+		final long seed;
+
+		Replay(SudokuBoard board) {
+			this.initialBoard = board.getInitialSnapshot();
+			this.board = board.snapshot();
+			this.history = board.getHistory();
+			this.position = board.getHistoryPosition();
+			this.seed = board.nextSeed();
+		}
+
+		int frames() {
+			return position + 1;
+		}
+
+		int getSize() {
+			return board.getSize();
+		}
+
+		// A board at the state of the given frame (after that many moves)
+		SudokuBoard boardAt(int frame) {
+			SudokuBoard replay = new SudokuBoard(initialBoard, board, seed);
+			replay.restoreHistory(history, position);
+			replay.seek(frame);
+			return replay;
+		}
+	}
+
+	// Writes the replay of the game as an animated GIF, with the given delay
+	// (hundredths of a second) between frames
+	void writeGif(SudokuBoard board, String path, int delay) throws IOException {
+		Replay replay = new Replay(board);
+		int cellResolution = SudokuAux.cellResolution(replay.getSize());
+
+		List<CompletableFuture<List<Delta>>> runs = render(replay, cellResolution, (frame, renderer, output) -> {
+			ColorImage img = renderer.getImage();
+			output.add(new Delta(img, frame == 0 ? new int[] { 0, 0, img.getWidth(), img.getHeight() }
+			    : renderer.lastRedrawnArea()));
+		});
+
+		Files.deleteIfExists(new File(path).toPath());
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		try (ImageOutputStream out = ImageIO.createImageOutputStream(new File(path))) {
+			writer.setOutput(out);
+			writer.prepareWriteSequence(null);
+
+			boolean first = true;
+			for (CompletableFuture<List<Delta>> run : runs)
+				for (Delta delta : run.join()) {
+					BufferedImage img = ImageUtil.wrapPixels(delta.pixels, delta.width, delta.height);
+					writer.writeToSequence(new IIOImage(img, null, frameMetadata(writer, img, delta, delay, first)), null);
+					first = false;
+				}
+
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	void writeGif(SudokuBoard board, String path) throws IOException {
+		writeGif(board, path, DEFAULT_FRAME_DELAY);
+	}
+
+	// Every frame of the replay of the game, in lines of the given number of
+	// columns (frame k in line k / columns, column k % columns), with cells of the
+	// given side in pixels
+	ColorImage spriteSheet(SudokuBoard board, int columns, int cellResolution) {
+		if (columns <= 0 || cellResolution <= 0)
+			throw new IllegalArgumentException("Dimensões inválidas da folha: " + columns + ", " + cellResolution);
+
+		Replay replay = new Replay(board);
+		final int side = cellResolution * replay.getSize();
+		final int columnCount = Math.min(columns, replay.frames());
+		int lineCount = (replay.frames() + columnCount - 1) / columnCount;
+		if ((long) side * columnCount * side * lineCount > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A folha seria demasiado grande: " + replay.frames() + " imagens");
+
+		final ColorImage sheet = new ColorImage(side * columnCount, side * lineCount, Color.SOLARIZED_BACKGROUND);
+
+		// Runs write to tiles of their own
+		List<CompletableFuture<List<Void>>> runs = render(replay, cellResolution, (frame, renderer, output) -> sheet
+		    .copyRect(renderer.getImage(), 0, 0, frame % columnCount * side, frame / columnCount * side, side, side));
+
+		for (CompletableFuture<List<Void>> run : runs)
+			run.join();
+
+		return sheet;
+	}
+
+	ColorImage spriteSheet(SudokuBoard board, int columns) {
+		return spriteSheet(board, columns, SudokuAux.cellResolution(board.getSize()));
+	}
+
+	// Splits the frames in runs, started on the executor. A run first renders the
+	// frame before its own, so that each of its frames is redrawn from the one
+	// before it
+	private <T> List<CompletableFuture<List<T>>> render(final Replay replay, final int cellResolution,
+	    final FrameConsumer<T> consumer) {
+		int frames = replay.frames();
+		int runs = 4 * Runtime.getRuntime().availableProcessors();
+		int runLength = Math.max(MIN_FRAMES_PER_RUN, (frames + runs - 1) / runs);
+
+		List<CompletableFuture<List<T>>> started = new ArrayList<>();
+		for (int from = 0; from < frames; from += runLength) {
+			final int first = from;
+			final int last = Math.min(from + runLength, frames) - 1;
+
+			started.add(CompletableFuture.supplyAsync(() -> {
+				List<T> output = new ArrayList<>();
+				SudokuBoard board = replay.boardAt(Math.max(first - 1, 0));
+				SudokuRenderer renderer = new SudokuRenderer(replay.getSize(), cellResolution);
+
+				// Attached, each frame redraws only what its move changed
+				renderer.attach(board);
+				renderer.flush(board);
+				if (first == 0)
+					consumer.accept(0, renderer, output);
+
+				for (int frame = Math.max(first, 1); frame <= last; frame++) {
+					board.seek(frame);
+					renderer.flush(board);
+					consumer.accept(frame, renderer, output);
+				}
+
+				return output;
+			}, executor));
+		}
+
+		return started;
+	}
+
+	private static IIOMetadata frameMetadata(ImageWriter writer, BufferedImage img, Delta delta, int delay,
+	    boolean first) throws IOException {
+		IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(img), null);
+		String format = metadata.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+		IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+		descriptor.setAttribute("imageLeftPosition", Integer.toString(delta.x));
+		descriptor.setAttribute("imageTopPosition", Integer.toString(delta.y));
+		descriptor.setAttribute("imageWidth", Integer.toString(delta.width));
+		descriptor.setAttribute("imageHeight", Integer.toString(delta.height));
+		descriptor.setAttribute("interlaceFlag", "FALSE");
+
+		// Each frame is drawn over the one before
+		IIOMetadataNode control = child(root, "GraphicControlExtension");
+		control.setAttribute("disposalMethod", "doNotDispose");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("delayTime", Integer.toString(delay));
+		control.setAttribute("transparentColorIndex", "0");
+
+		// Loops forever
+		if (first) {
+			IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+			loop.setAttribute("applicationID", "NETSCAPE");
+			loop.setAttribute("authenticationCode", "2.0");
+			loop.setUserObject(new byte[] { 1, 0, 0 });
+			child(root, "ApplicationExtensions").appendChild(loop);
+		}
+
+		metadata.setFromTree(format, root);
+		return metadata;
+	}
+
+	private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+		for (int k = 0; k < root.getLength(); k++)
+			if (root.item(k).getNodeName().equals(name))
+				return (IIOMetadataNode) root.item(k);
+
+		IIOMetadataNode node = new IIOMetadataNode(name);
+		root.appendChild(node);
+		return node;
+	}
+}
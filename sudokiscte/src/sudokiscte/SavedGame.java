@@ -0,0 +1,258 @@
+package sudokiscte;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+// Binary format of saved games (.sudgame). All numbers are big-endian:
+//
+// "SUDG" | version (1 byte) | sector size (1 byte) | number of moves (4 bytes)
+// | moves made (4 bytes) | initial board | current board | moves
+// | CRC32 of everything before (4 bytes)
+//
+// Boards are packed line after line with as few bits per position as their
+// values need (4 for 9x9, 5 for 16x16 and 25x25, 6 for 36x36). Each move of the
+// history (see MoveJournal) is packed as its position (line * size + column),
+// the value before and the value after it. The three packed sections are padded
+// to whole bytes. Version 1 had no count of moves made, and kept only the value
+// after each move (every move being made)
+class SavedGame {
+	static final byte[] MAGIC = { 'S', 'U', 'D', 'G' };
+	static final int VERSION = 2;
+	static final int CHECKSUM_BYTES = 4;
+
+	final int sectorSize;
+	final int[][] initialBoard;
+	final int[][] board;
+	final int[] moves; // as packed by MoveJournal, oldest first
+	final int position; // how many of the moves were made
+
+	SavedGame(int sectorSize, int[][] initialBoard, int[][] board, int[] moves, int position) {
+		this.sectorSize = sectorSize;
+		this.initialBoard = initialBoard;
+		this.board = board;
+		this.moves = moves;
+		this.position = position;
+	}
+
+	static SavedGame of(SudokuBoard sudokuBoard) {
+		return new SavedGame(sudokuBoard.getSectorSize(), sudokuBoard.getInitialBoard(), sudokuBoard.getBoard(),
+		    sudokuBoard.getHistory(), sudokuBoard.getHistoryPosition());
+	}
+
+	void applyTo(SudokuBoard sudokuBoard) {
+		if (sudokuBoard.getSectorSize() != sectorSize)
+			throw new IllegalArgumentException("O jogo guardado não tem o tamanho deste tabuleiro");
+
+		sudokuBoard.replace(BoardSnapshot.of(initialBoard), BoardSnapshot.of(board), moves, position);
+	}
+
+	// A board in the state of the saved game (nothing is blanked)
+	SudokuBoard toBoard() {
+		SudokuBoard sudokuBoard = new SudokuBoard(BoardSnapshot.of(initialBoard), BoardSnapshot.of(board));
+		sudokuBoard.restoreHistory(moves, position);
+		return sudokuBoard;
+	}
+
+	static boolean hasMagic(byte[] data) {
+		if (data.length < MAGIC.length)
+			return false;
+
+		for (int k = 0; k < MAGIC.length; k++)
+			if (data[k] != MAGIC[k])
+				return false;
+
+		return true;
+	}
+
+	static int valueBits(int size) {
+		return BoardSnapshot.valueBits(size);
+	}
+
+	static int cellBits(int size) {
+		return 32 - Integer.numberOfLeadingZeros(size * size - 1);
+	}
+
+	int encodedLength() {
+		return encodedLength(VERSION, sectorSize, moves.length);
+	}
+
+	static int headerBytes(int version) {
+		return version == 1 ? 10 : 14;
+	}
+
+	static int encodedLength(int version, int sectorSize, int moveCount) {
+		int size = sectorSize * sectorSize;
+		int boardBytes = (size * size * valueBits(size) + 7) / 8;
+		int moveBits = cellBits(size) + (version == 1 ? 1 : 2) * valueBits(size);
+		long moveBytes = ((long) moveCount * moveBits + 7) / 8;
+
+		return (int) Math.min(Integer.MAX_VALUE, headerBytes(version) + 2 * boardBytes + moveBytes + CHECKSUM_BYTES);
+	}
+
+	byte[] encode() {
+		ByteBuffer out = ByteBuffer.allocate(encodedLength());
+		int size = sectorSize * sectorSize;
+		int valueBits = valueBits(size);
+
+		out.put(MAGIC).put((byte) VERSION).put((byte) sectorSize).putInt(moves.length).putInt(position);
+
+		BitWriter bits = new BitWriter(out);
+		for (int[][] grid : new int[][][] { initialBoard, board }) {
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++)
+					bits.write(grid[i][j], valueBits);
+			bits.flush();
+		}
+
+		for (int move : moves) {
+			bits.write(MoveJournal.line(move) * size + MoveJournal.column(move), cellBits(size));
+			bits.write(MoveJournal.oldValue(move), valueBits);
+			bits.write(MoveJournal.newValue(move), valueBits);
+		}
+		bits.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(out.array(), 0, out.position());
+		out.putInt((int) crc.getValue());
+
+		return out.array();
+	}
+
+	static SavedGame decode(byte[] data) {
+		return decode(ByteBuffer.wrap(data));
+	}
+
+	// Reads a game from the buffer's position up to its limit
+	static SavedGame decode(ByteBuffer in) {
+		int start = in.position();
+		if (in.remaining() < headerBytes(1) + CHECKSUM_BYTES)
+			throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
+
+		for (int k = 0; k < MAGIC.length; k++)
+			if (in.get() != MAGIC[k])
+				throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+
+		int version = in.get();
+		if (version != 1 && version != VERSION)
+			throw new IllegalArgumentException("Versão de ficheiro não suportada: " + version);
+
+		int sectorSize = in.get();
+		int moveCount = in.getInt();
+		int position = version == 1 ? moveCount : in.getInt();
+		if (sectorSize < 1 || sectorSize > BoardGeometry.MAX_SECTOR_SIZE || moveCount < 0 || position < 0
+		    || position > moveCount)
+			throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+
+		if (in.remaining() < encodedLength(version, sectorSize, moveCount) - headerBytes(version))
+			throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
+
+		int size = sectorSize * sectorSize;
+		int valueBits = valueBits(size);
+		BitReader bits = new BitReader(in);
+
+		int[][][] grids = new int[2][size][size];
+		for (int[][] grid : grids) {
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++)
+					grid[i][j] = checkValue(bits.read(valueBits), size);
+			bits.align();
+		}
+
+		// Version 1 has no values before the moves: they are found by making the
+		// moves again from the initial board
+		int[][] replayed = version == 1 ? copy(grids[0]) : null;
+
+		int[] moves = new int[moveCount];
+		for (int k = 0; k < moveCount; k++) {
+			int cell = bits.read(cellBits(size));
+			if (cell >= size * size)
+				throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+
+			int line = cell / size;
+			int column = cell % size;
+			int oldValue = version == 1 ? replayed[line][column] : checkValue(bits.read(valueBits), size);
+			int newValue = checkValue(bits.read(valueBits), size);
+			if (version == 1)
+				replayed[line][column] = newValue;
+
+			moves[k] = MoveJournal.pack(line, column, oldValue, newValue);
+		}
+		bits.align();
+
+		CRC32 crc = new CRC32();
+		ByteBuffer checked = in.duplicate();
+		checked.position(start).limit(in.position());
+		crc.update(checked);
+		if (in.getInt() != (int) crc.getValue())
+			throw new IllegalArgumentException("O ficheiro está corrompido");
+
+		return new SavedGame(sectorSize, grids[0], grids[1], moves, position);
+	}
+
+	private static int[][] copy(int[][] board) {
+		int[][] copy = new int[board.length][];
+		for (int i = 0; i < board.length; i++)
+			copy[i] = board[i].clone();
+		return copy;
+	}
+
+	private static int checkValue(int value, int size) {
+		if (value > size)
+			throw new IllegalArgumentException("O ficheiro tem um valor inválido: " + value);
+		return value;
+	}
+
+	// Packs values most significant bit first
+	private static class BitWriter {
+		private final ByteBuffer out;
+		private int pending;
+		private int pendingBits;
+
+		BitWriter(ByteBuffer out) {
+			this.out = out;
+		}
+
+		void write(int value, int bits) {
+			for (int b = bits - 1; b >= 0; b--) {
+				pending = pending << 1 | ((value >>> b) & 1);
+				if (++pendingBits == 8) {
+					out.put((byte) pending);
+					pending = pendingBits = 0;
+				}
+			}
+		}
+
+		// Pads the last byte with zeros
+		void flush() {
+			if (pendingBits > 0)
+				write(0, 8 - pendingBits);
+		}
+	}
+
+	private static class BitReader {
+		private final ByteBuffer in;
+		private int current;
+		private int bitsLeft;
+
+		BitReader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		int read(int bits) {
+			int value = 0;
+			for (int b = 0; b < bits; b++) {
+				if (bitsLeft == 0) {
+					current = in.get() & 0xFF;
+					bitsLeft = 8;
+				}
+				value = value << 1 | ((current >>> --bitsLeft) & 1);
+			}
+			return value;
+		}
+
+		// Skips the padding of the last byte
+		void align() {
+			bitsLeft = 0;
+		}
+	}
+}
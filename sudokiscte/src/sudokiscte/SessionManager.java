@@ -0,0 +1,177 @@
+package sudokiscte;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Games being played at the same time, each in a session of its own; sessions
+// share a pool of threads, as large as the number of processors. Games can be
+// saved as they are played, and recovered after a crash (see Autosave), and kept
+// in an archive once closed (see GameArchive). Sessions left idle can be parked,
+// their boards moved out of the heap (see BoardStore)
+class SessionManager {
+	private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+	private final AtomicLong nextId = new AtomicLong(1);
+	private final ExecutorService executor;
+
+	// Null when games are not saved
+	private final Autosave autosave;
+	private final ConcurrentHashMap<Long, Autosave.Game> saved = new ConcurrentHashMap<>();
+
+	// Null when closed games are not archived
+	private final GameArchive archive;
+
+	// Stores of parked boards, by sector size, and the thread that parks idle
+	// sessions (once started)
+	private final ConcurrentHashMap<Integer, BoardStore> stores = new ConcurrentHashMap<>();
+	private ScheduledExecutorService parker;
+
+	SessionManager() {
+		this(newExecutor());
+	}
+
+	static ExecutorService newExecutor() {
+		return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+		    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	}
+
+	SessionManager(ExecutorService executor) {
+		this(executor, null);
+	}
+
+	SessionManager(ExecutorService executor, Autosave autosave) {
+		this(executor, autosave, null);
+	}
+
+	SessionManager(ExecutorService executor, Autosave autosave, GameArchive archive) {
+		this.executor = executor;
+		this.autosave = autosave;
+		this.archive = archive;
+	}
+
+	// The puzzle is blanked as in SudokuBoard: with a unique solution up to 9x9,
+	// at random on larger boards
+	GameSession create(int[][] puzzle, double difficulty) {
+		return add(nextId.getAndIncrement(), new SudokuBoard(puzzle, difficulty));
+	}
+
+	// Creates the game on the threads of the sessions (blanking a board takes the
+	// solver a while), not on the caller's
+	CompletableFuture<GameSession> createAsync(int[][] puzzle, double difficulty) {
+		return CompletableFuture.supplyAsync(() -> create(puzzle, difficulty), executor);
+	}
+
+	// The board is not yet shared with other threads
+	private GameSession add(long id, SudokuBoard board) {
+		if (autosave != null)
+			saved.put(id, autosave.attach(id, board));
+
+		GameSession session = new GameSession(id, board, executor);
+		sessions.put(id, session);
+
+		return session;
+	}
+
+	// Brings back the games saved and not closed (eg. before a crash), with the
+	// ids they had; returns how many there were
+	int recover() throws IOException {
+		if (autosave == null)
+			return 0;
+
+		int recovered = 0;
+		for (long id : autosave.savedGames())
+			if (!sessions.containsKey(id)) {
+				add(id, autosave.recover(id));
+				nextId.accumulateAndGet(id + 1, Math::max);
+				recovered++;
+			}
+
+		return recovered;
+	}
+
+	GameSession get(long id) {
+		GameSession session = sessions.get(id);
+		if (session == null)
+			throw new IllegalArgumentException("O jogo " + id + " não existe");
+
+		return session;
+	}
+
+	// Commands already sent to the session are still run; then the game is
+	// archived, and its saved files deleted (kept, if it could not be archived)
+	CompletableFuture<Void> close(long id) {
+		GameSession session = sessions.remove(id);
+		Autosave.Game game = saved.remove(id);
+		if (session == null || game == null && archive == null)
+			return CompletableFuture.completedFuture(null);
+
+		return session.submit(board -> {
+			try {
+				if (archive != null) {
+					archive.append(SavedGame.of(board));
+					archive.force();
+				}
+			} catch (IOException e) {
+				if (game != null)
+					game.detach(board, false);
+				throw new IllegalStateException("O jogo " + id + " não pode ser arquivado: " + e.getMessage());
+			}
+
+			if (game != null)
+				game.detach(board, true);
+			return null;
+		});
+	}
+
+	int size() {
+		return sessions.size();
+	}
+
+	BoardStore store(int sectorSize) {
+		return stores.computeIfAbsent(sectorSize, BoardStore::new);
+	}
+
+	// Parks the sessions that have been idle for longer than the given time,
+	// returning how many were asked to
+	int parkIdle(long idleMillis) {
+		int parked = 0;
+		for (GameSession session : sessions.values())
+			if (!session.isParked() && session.idleNanos() > TimeUnit.MILLISECONDS.toNanos(idleMillis)) {
+				session.park(store(session.getSectorSize()));
+				parked++;
+			}
+
+		return parked;
+	}
+
+	// From now on, parks the sessions idle for longer than the given time (checked
+	// twice in that time)
+	synchronized void parkIdleSessions(final long idleMillis) {
+		if (parker != null)
+			return;
+
+		parker = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "parking");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(idleMillis / 2, 1);
+		parker.scheduleWithFixedDelay(() -> parkIdle(idleMillis), period, period, TimeUnit.MILLISECONDS);
+	}
+
+	void shutdown() throws InterruptedException {
+		synchronized (this) {
+			if (parker != null)
+				parker.shutdownNow();
+		}
+		sessions.clear();
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
@@ -1,188 +1,270 @@
 package sudokiscte;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 class Sudoku {
+	static final String WIN_MESSAGE_FILE = "src/fixtures/win_message";
+
 	private SudokuBoard sudokuBoard;
 	public ColorImage boardImg;
-	private String winMessage;
+	private SudokuRenderer renderer;
+	private HintEngine hints;
+
+	// When set, the image is only brought up to date by getImage()
+	private boolean lazyRendering = false;
+
+	// Plays that repeat values are reported on the console
+	private static final SudokuListener CONFLICT_REPORTER = new SudokuListener() {
+		@Override
+		public void conflictFound(SudokuBoard board, Conflict conflict) {
+			System.out.println(conflict);
+		}
+	};
 
 	public Sudoku(String fileName, double difficulty) {
-		int[][] fileContent = new int[SudokuAux.BOARD_SIZE][SudokuAux.BOARD_SIZE];
+		this(readGameFile(fileName), difficulty, true);
+	}
+
+	// Without a renderer, a game keeps no image: renderers can be attached later.
+	// Games on boards larger than 9x9 may have several solutions (see
+	// SudokuGenerator.MAX_UNIQUE_BLANKING_SECTOR_SIZE)
+	private Sudoku(int[][] puzzle, double difficulty, boolean rendered) {
+		this.sudokuBoard = new SudokuBoard(puzzle, difficulty);
+		sudokuBoard.addListener(CONFLICT_REPORTER);
+
+		if (rendered)
+			attachRenderer();
+	}
+
+	// Game with no image, eg. for games played on a server
+	static Sudoku headless(String fileName, double difficulty) {
+		return new Sudoku(readGameFile(fileName), difficulty, false);
+	}
+
+	static Sudoku headless(int[][] puzzle, double difficulty) {
+		return new Sudoku(puzzle, difficulty, false);
+	}
+
+	void attachRenderer() {
+		if (renderer != null)
+			return;
+
+		renderer = new SudokuRenderer(sudokuBoard.getSize());
+		renderer.attach(sudokuBoard);
+		boardImg = renderer.getImage();
+		repaint();
+	}
 
-		ColorImage boardImg = new ColorImage(SudokuAux.BOARD_RESOLUTION, SudokuAux.BOARD_RESOLUTION,
-		    Color.SOLARIZED_BACKGROUND);
+	void detachRenderer() {
+		if (renderer == null)
+			return;
 
-		boardImg.drawMargin();
-		boardImg.drawGrid(SudokuAux.BOARD_SIZE, SudokuAux.BOARD_SIZE, SudokuAux.SECTOR_SIZE);
+		renderer.detach();
+		renderer = null;
+		boardImg = null;
+	}
 
-		readGameFile(fileName, fileContent);
+	// In lazy rendering, plays do not draw anything until the image is requested
+	void setLazyRendering(boolean lazy) {
+		this.lazyRendering = lazy;
+		repaint();
+	}
 
-		winMessage = readMessageFile("src/fixtures/win_message");
+	// The image of the board, up to date, or null when no renderer is attached
+	ColorImage getImage() {
+		return renderer == null ? null : renderer.frame();
+	}
 
-		this.boardImg = boardImg;
+	SudokuBoard getBoard() {
+		return sudokuBoard;
+	}
 
-		this.sudokuBoard = new SudokuBoard(fileContent, difficulty);
+	// Read when the first game is finished (most games never are), and shared by
+	// every game from then on
+	private static class WinMessage {
+		static final String TEXT = readMessageFile(WIN_MESSAGE_FILE);
+	}
 
-		for (int i = 0; i < SudokuAux.BOARD_SIZE; i++)
-			validateAndPaint(i, i);
+	private static String winMessage() {
+		return WinMessage.TEXT;
 	}
 
-	private String readMessageFile(String fileName) {
-		String text = new String();
+	private static String readMessageFile(String fileName) {
 		try {
-			Scanner scanner = new Scanner(new File(fileName));
-			while (scanner.hasNextLine())
-				text += scanner.nextLine() + "\n";
-			scanner.close();
-			return text;
-		} catch (FileNotFoundException e) {
+			StringBuilder text = new StringBuilder();
+			for (String line : Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8))
+				text.append(line).append('\n');
+			return text.toString();
+		} catch (NoSuchFileException e) {
 			System.out.println("ficheiro " + fileName + " não encontrado");
-			return "Parabéns por concluir o jogo!";
+		} catch (IOException e) {
+			System.out.println("ficheiro " + fileName + " não pode ser lido");
 		}
+		return "Parabéns por concluir o jogo!";
 	}
 
 	private boolean isGameFinished() {
 		return sudokuBoard.isGameFinished();
 	}
 
-	private void readGameFile(String fileName, int[][] fileContent) {
-		try {
-			Scanner scanner = new Scanner(new File(fileName));
-			for (int i = 0; i < SudokuAux.BOARD_SIZE; i++) {
-				for (int j = 0; j < SudokuAux.BOARD_SIZE; j++) {
-					int value = scanner.nextInt();
-					fileContent[i][j] = value;
-				}
-			}
-			scanner.close();
-		} catch (FileNotFoundException e) {
-			System.out.println("ficheiro " + fileName + " não encontrado");
-		}
+	// The board size follows from the file: 9 lines of 9 numbers for 9x9, 16 of 16
+	// for 16x16, ... (see PuzzleReader for the layouts read); a missing file is an
+	// error, rather than an empty board
+	private static int[][] readGameFile(String fileName) {
+		return PuzzleReader.readFirst(fileName);
 	}
 
 	public void randomPlay() {
-		sudokuBoard.randomPlay();
+		if (!sudokuBoard.randomPlay())
+			System.out.println("Não há jogadas possíveis");
 
-		for (int i = 0; i < SudokuBoard.BOARD_SIZE; i++)
-			validateAndPaint(i, i);
+		repaint();
 		if (isGameFinished())
-			System.out.println(winMessage);
+			System.out.println(winMessage());
 	}
 
 	public void reset() {
 		sudokuBoard.reset();
 
-		for (int i = 0; i < SudokuBoard.BOARD_SIZE; i++)
-			validateAndPaint(i, i);
+		repaint();
 	}
 
 	public void play(int i, int j, int value) {
 		sudokuBoard.play(i, j, value);
 
-		validateAndPaint(i, j);
+		repaint();
 		if (isGameFinished())
-			System.out.println(winMessage);
+			System.out.println(winMessage());
 	}
 
+	// Games are saved in the binary format of SavedGame (initial board, current
+	// board and plays made)
 	public void save(String filename) {
+		long start = SudokuMetrics.start();
 		try {
-			PrintWriter pw = new PrintWriter(new File(filename + ".sudgame"));
-
-			for (int i = 0; i < SudokuBoard.BOARD_SIZE; i++) {
-				for (int j = 0; j < SudokuBoard.BOARD_SIZE; j++)
-					pw.print(sudokuBoard.getInitialValue(i, j) + (j == SudokuBoard.BOARD_SIZE - 1 ? "" : " "));
-
-				pw.print("\n");
-			}
-			pw.print("\n"); // One extra line to separate initial board and game state
-
-			for (int i = 0; i < SudokuBoard.BOARD_SIZE; i++) {
-				for (int j = 0; j < SudokuBoard.BOARD_SIZE; j++)
-					pw.print(sudokuBoard.getValue(i, j) + (j == SudokuBoard.BOARD_SIZE - 1 ? "" : " "));
-
-				pw.print("\n");
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(filename + ".sudgame"));
+			try {
+				out.write(SavedGame.of(sudokuBoard).encode());
+			} finally {
+				out.close();
 			}
-			pw.close();
-		} catch (FileNotFoundException e) {
+			SudokuMetrics.stop(SudokuMetrics.Operation.SAVE, start);
+		} catch (IOException e) {
+			SudokuMetrics.failed(SudokuMetrics.Operation.SAVE);
 			System.out.println("o ficheiro data.txt não pode ser escrito");
 		}
 	}
 
-	public void loadSavedGame(String fileName) {
+	// The moves made so far, as an animated GIF
+	public void exportReplay(String filename) {
 		try {
-			Scanner scanner = new Scanner(new File(fileName)); // Add `+ ".sudgame"` to force file type
-			for (int i = 0; i < SudokuAux.BOARD_SIZE; i++) {
-				String s = scanner.nextLine();
-				if (s.equals(""))
-					throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
-
-				int numbers = 0;
-				for (int j = 0; j < s.length(); j++) {
-					String charValue = String.valueOf(s.charAt(j));
-					if (charValue.equals(" "))
-						continue;
-
-					int value = Integer.parseInt(charValue);
-					sudokuBoard.setInInitial(i, numbers, value);
-					numbers++;
-				}
-			}
+			new ReplayExporter().writeGif(sudokuBoard, filename + ".gif");
+		} catch (IOException e) {
+			System.out.println("o ficheiro " + filename + ".gif não pode ser escrito");
+		}
+	}
 
-			// Next line after initial board should be blank, according to format
-			if (!scanner.nextLine().equals(""))
-				throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+	// Reads both the binary format and the text format of older saved games
+	public void loadSavedGame(String fileName) {
+		long start = SudokuMetrics.start();
+		try {
+			byte[] data = Files.readAllBytes(Paths.get(fileName)); // Add `+ ".sudgame"` to force file type
 
-			for (int i = 0; i < SudokuAux.BOARD_SIZE; i++) {
-				String s = scanner.nextLine();
-				if (s.equals(""))
-					throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
-
-				int numbers = 0;
-				for (int j = 0; j < s.length(); j++) {
-					String charValue = String.valueOf(s.charAt(j));
-					if (charValue.equals(" "))
-						continue;
-
-					int value = Integer.parseInt(charValue);
-					sudokuBoard.setInBoard(i, numbers, value);
-					numbers++;
-				}
-			}
-			scanner.close();
+			if (SavedGame.hasMagic(data))
+				SavedGame.decode(data).applyTo(sudokuBoard);
+			else
+				loadTextGame(new Scanner(new ByteArrayInputStream(data), "UTF-8"));
 
-			for (int i = 0; i < SudokuAux.BOARD_SIZE; i++)
-				validateAndPaint(i, i);
-		} catch (FileNotFoundException e) {
+			repaint();
+			SudokuMetrics.stop(SudokuMetrics.Operation.LOAD, start);
+			return;
+		} catch (NoSuchFileException e) {
 			System.out.println("ficheiro " + fileName + " não encontrado");
+		} catch (IOException e) {
+			System.out.println("ficheiro " + fileName + " não pode ser lido");
+		} catch (NoSuchElementException e) {
+			System.out.println("O ficheiro chegou ao fim antes do esperado");
 		} catch (IllegalStateException e) {
 			System.out.println(e.getMessage());
 		} catch (IllegalArgumentException e) {
 			System.out.println(e.getMessage());
 		}
+		SudokuMetrics.failed(SudokuMetrics.Operation.LOAD);
+	}
+
+	// Both boards are read before the game is replaced, so that a file out of
+	// the format leaves the game as it was
+	private void loadTextGame(Scanner scanner) {
+		int size = sudokuBoard.getSize();
+		int[][] initialBoard = readTextBoard(scanner, size);
+
+		// Next line after initial board should be blank, according to format
+		if (!scanner.nextLine().equals(""))
+			throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+
+		int[][] board = readTextBoard(scanner, size);
+		scanner.close();
+
+		sudokuBoard.replace(BoardSnapshot.of(initialBoard), BoardSnapshot.of(board), new int[0], 0);
+	}
+
+	private static int[][] readTextBoard(Scanner scanner, int size) {
+		int[][] board = new int[size][size];
+		for (int i = 0; i < size; i++) {
+			String s = scanner.nextLine();
+			if (s.equals(""))
+				throw new IllegalArgumentException("O ficheiro chegou ao fim antes do esperado");
+
+			// Values are separated by spaces, and may have more than one digit
+			String[] values = s.trim().split(" +");
+			if (values.length != size)
+				throw new IllegalArgumentException("O ficheiro está fora do formato esperado");
+
+			for (int j = 0; j < size; j++) {
+				board[i][j] = Integer.parseInt(values[j]);
+				if (!SudokuAux.validElement(board[i][j], size))
+					throw new IllegalArgumentException("Valor inválido no ficheiro: " + values[j]);
+			}
+		}
+
+		return board;
+	}
+
+	public void hint() {
+		if (hints == null)
+			hints = new HintEngine(sudokuBoard);
+
+		HintEngine.Hint hint = hints.next();
+		System.out.println(hint == null ? "Não há dicas para este tabuleiro" : hint.toString());
 	}
 
 	public void undo() {
 		sudokuBoard.undo();
 
-		for (int i = 0; i < SudokuAux.BOARD_SIZE; i++)
-			validateAndPaint(i, i);
+		repaint();
 	}
 
-	private void validateAndPaint(int i, int j) {
-		SudokuAux.paintLine(boardImg, i, sudokuBoard.board, true);
-		SudokuAux.paintColumn(boardImg, j, sudokuBoard.board, true);
+	public void redo() {
+		sudokuBoard.redo();
 
-		SudokuAux.paintSector(boardImg, i, j, sudokuBoard.board, sudokuBoard.validateSector(i, j));
+		repaint();
+		if (isGameFinished())
+			System.out.println(winMessage());
+	}
 
-		for (int k = 0; k < SudokuAux.BOARD_SIZE; k++) {
-			if (!sudokuBoard.validateLine(k))
-				SudokuAux.paintLine(boardImg, k, sudokuBoard.board, false);
-			if (!sudokuBoard.validateColumn(k))
-				SudokuAux.paintColumn(boardImg, k, sudokuBoard.board, false);
-		}
+	// One flush per action: only cells that changed value or validity are redrawn
+	private void repaint() {
+		if (renderer != null && !lazyRendering)
+			renderer.frame();
 	}
 }
@@ -7,9 +7,16 @@ class SudokuAux {
 	static final int CELL_RESOLUTION = BOARD_RESOLUTION / BOARD_SIZE;
 
 	static boolean validGame(int[][] board) {
+		return validGame(board, SECTOR_SIZE);
+	}
+
+	// Same as validGame(board), for boards of any sector size
+	static boolean validGame(int[][] board, int sectorSize) {
+		int size = sectorSize * sectorSize;
+
 		// Check the length of board lines and columns; if any doesn't match the
 		// expected length, the board is not valid
-		if (board.length != BOARD_SIZE || boardLinesOutOfSize(board))
+		if (board.length != size || boardLinesOutOfSize(board, size))
 			return false;
 
 		// Sweeps through every position on the board
@@ -18,7 +25,7 @@ class SudokuAux {
 				int value = board[i][j];
 
 				// Check if value is in the correct range
-				if (!validElement(value))
+				if (!validElement(value, size))
 					return false;
 
 				// Search in the quadrant of the cell we have in hand for repeated values
@@ -30,8 +37,10 @@ class SudokuAux {
 	}
 
 	static boolean validSectorPlay(int i, int j, int value, int[][] board) {
-		for (int k = (i / SECTOR_SIZE) * SECTOR_SIZE; k < (i / SECTOR_SIZE) * SECTOR_SIZE + SECTOR_SIZE; k++)
-			for (int l = (j / SECTOR_SIZE) * SECTOR_SIZE; l < (j / SECTOR_SIZE) * SECTOR_SIZE + SECTOR_SIZE; l++) {
+		int sectorSize = sectorSizeOf(board);
+
+		for (int k = (i / sectorSize) * sectorSize; k < (i / sectorSize) * sectorSize + sectorSize; k++)
+			for (int l = (j / sectorSize) * sectorSize; l < (j / sectorSize) * sectorSize + sectorSize; l++) {
 				if (board[k][l] == value && (k != i || l != j)) {
 					return false;
 				}
@@ -41,69 +50,68 @@ class SudokuAux {
 	}
 
 	static boolean validElement(int value) {
-		return value >= 0 && value <= 9;
+		return validElement(value, BOARD_SIZE);
 	}
 
-	static void blankBoardProportionally(int[][] board, double blankPercentage) {
-		// Calculates the number (floored) of positions on the board to be marked as 0
-		int toMakeBlank = (int) (blankPercentage * BOARD_SIZE * BOARD_SIZE);
-
-		while (toMakeBlank > 0) {
-			// Randomize a position on the board
-			int i = (int) (Math.random() * BOARD_SIZE);
-			int j = (int) (Math.random() * BOARD_SIZE);
+	static boolean validElement(int value, int size) {
+		return value >= 0 && value <= size;
+	}
 
-			// If the position on the board is not blank
-			if (board[i][j] != 0) {
-				// Make it blank, and one less to position to make so
-				board[i][j] = 0;
-				toMakeBlank--;
-			}
-		}
+	// Sector size of a square board (3 for 9x9, 4 for 16x16, ...)
+	static int sectorSizeOf(int[][] board) {
+		return (int) Math.round(Math.sqrt(board.length));
 	}
 
 	// Check for board lines out of specified size for a sudoku board
 	static boolean boardLinesOutOfSize(int[][] board) {
+		return boardLinesOutOfSize(board, BOARD_SIZE);
+	}
+
+	static boolean boardLinesOutOfSize(int[][] board, int size) {
 		for (int i = 0; i < board.length; i++)
-			if (board[i].length != BOARD_SIZE)
+			if (board[i].length != size)
 				return true;
 
 		return false;
 	}
 
 	static void writeToCellWithFontColor(ColorImage img, int cellLine, int cellColumn, String content, Color c) {
-		img.paintCell(cellLine, cellColumn, CELL_RESOLUTION, Color.SOLARIZED_BACKGROUND);
-		img.drawText((cellColumn * CELL_RESOLUTION) + CELL_RESOLUTION / 4,
-		    (cellLine * CELL_RESOLUTION) - CELL_RESOLUTION / 12, (content.equals("0")) ? "" : content, CELL_RESOLUTION, c);
+		writeToCellWithFontColor(img, cellLine, cellColumn, content, c, CELL_RESOLUTION);
 	}
 
-	static void paintLine(ColorImage img, int line, int[][] board, boolean valid) {
-		Color c = valid ? Color.SOLARIZED_FONT : Color.SOLARIZED_ERROR;
+	static void writeToCellWithFontColor(ColorImage img, int cellLine, int cellColumn, String content, Color c,
+	    int cellResolution) {
+		img.paintCell(cellLine, cellColumn, cellResolution, Color.SOLARIZED_BACKGROUND);
+		writeToBlankCell(img, cellLine, cellColumn, content, c, cellResolution);
+	}
 
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			img.paintCell(line, i, CELL_RESOLUTION, Color.SOLARIZED_ERROR);
-			writeToCellWithFontColor(img, line, i, board[line][i] + "", c);
+	// Writes in a cell that is known to be blank (of the background color), so
+	// that only the text has to be drawn
+	static void writeToBlankCell(ColorImage img, int cellLine, int cellColumn, String content, Color c,
+	    int cellResolution) {
+		if (content.length() > 1) {
+			// Values from 10 up (boards larger than 9x9) are written smaller, centered
+			img.drawCenteredText((cellColumn * cellResolution) + cellResolution / 2,
+			    (cellLine * cellResolution) + cellResolution / 2, content, cellResolution * 11 / 20, c);
+			return;
 		}
+
+		img.drawText((cellColumn * cellResolution) + cellResolution / 4,
+		    (cellLine * cellResolution) - cellResolution / 12, (content.equals("0")) ? "" : content, cellResolution, c);
 	}
 
-	static void paintColumn(ColorImage img, int column, int[][] board, boolean valid) {
-		Color c = valid ? Color.SOLARIZED_FONT : Color.SOLARIZED_ERROR;
+	// Appends the board in the one-line layout (see PuzzleReader), returning the
+	// builder
+	static StringBuilder appendOneLine(StringBuilder text, int[][] board) {
+		for (int[] boardLine : board)
+			for (int value : boardLine)
+				text.append((char) (value < 10 ? '0' + value : 'A' + value - 10));
 
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			img.paintCell(i, column, CELL_RESOLUTION, Color.SOLARIZED_ERROR);
-			writeToCellWithFontColor(img, i, column, board[i][column] + "", c);
-		}
+		return text;
 	}
 
-	static void paintSector(ColorImage img, int verticalIndex, int horizontalIndex, int[][] board, boolean valid) {
-		Color c = valid ? Color.SOLARIZED_FONT : Color.SOLARIZED_ERROR;
-
-		for (int k = (verticalIndex / SECTOR_SIZE) * SECTOR_SIZE; k < (verticalIndex / SECTOR_SIZE) * SECTOR_SIZE
-		    + SECTOR_SIZE; k++)
-			for (int l = (horizontalIndex / SECTOR_SIZE) * SECTOR_SIZE; l < (horizontalIndex / SECTOR_SIZE) * SECTOR_SIZE
-			    + SECTOR_SIZE; l++) {
-				img.paintCell(k, l, CELL_RESOLUTION, Color.SOLARIZED_ERROR);
-				writeToCellWithFontColor(img, k, l, board[k][l] + "", c);
-			}
+	// Cell side, in pixels, for a board with the given number of lines
+	static int cellResolution(int size) {
+		return BOARD_RESOLUTION / size;
 	}
 }
@@ -0,0 +1,317 @@
+package sudokiscte;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Headless solving of collections of puzzles: puzzles are read in order, solved
+// by a pool of workers and their results written in the order they were read,
+// one line per puzzle:
+// <number> <solutions> <nanoseconds> <nodes> <solution> [<equivalent>]
+// where solutions is 0 (no solution, or repeated values in the puzzle), 1 or 2
+// (more than one solution), and the solution is in the one-line layout ('-' when
+// there is none). When asked to, puzzles up to 9x9 equivalent to an earlier one
+// (see PuzzleIndex) are followed by the number of the first of them. No image
+// is created. Collections of new 9x9 puzzles can be generated too (see generate)
+class SudokuBatch {
+	static final int DEFAULT_QUEUE_PER_WORKER = 64;
+
+	private final int workers;
+	private final int queueCapacity;
+	private final SudokuSolver solver;
+	private final boolean findEquivalent;
+
+	// Totals of the last run
+	private long puzzles;
+	private long unique;
+	private long multiple;
+	private long unsolvable;
+	private long equivalent;
+
+	// Result of a puzzle, as handed to the writer: its line, without the end, and
+	// its canonical form (null unless equivalent puzzles are looked for)
+	private static class Solved {
+		final long number;
+		final String line;
+		final BoardSnapshot key;
+
+		Solved(long number, String line, BoardSnapshot key) {
+			this.number = number;
+			this.line = line;
+			this.key = key;
+		}
+	}
+
+	SudokuBatch(int workers) {
+		this(workers, new BitmaskSolver());
+	}
+
+	SudokuBatch(int workers, SudokuSolver solver) {
+		this(workers, workers * DEFAULT_QUEUE_PER_WORKER, solver);
+	}
+
+	// At most `queueCapacity` puzzles are read ahead of the one being written;
+	// reading waits for the workers and for the output beyond that
+	SudokuBatch(int workers, int queueCapacity, SudokuSolver solver) {
+		this(workers, queueCapacity, solver, false);
+	}
+
+	SudokuBatch(int workers, int queueCapacity, SudokuSolver solver, boolean findEquivalent) {
+		if (workers < 1 || queueCapacity < 1)
+			throw new IllegalArgumentException("O número de tarefas e a capacidade da fila devem ser positivos");
+
+		this.workers = workers;
+		this.queueCapacity = queueCapacity;
+		this.solver = solver;
+		this.findEquivalent = findEquivalent;
+	}
+
+	// Solves every puzzle of the file into the output file, returning how many
+	// puzzles there were
+	long run(String inputFile, String outputFile) throws IOException, InterruptedException {
+		try (Stream<int[][]> input = PuzzleReader.read(inputFile);
+		    Writer output = new BufferedWriter(
+		        new OutputStreamWriter(Files.newOutputStream(Paths.get(outputFile)), StandardCharsets.US_ASCII),
+		        1 << 16)) {
+			return run(input.iterator(), output);
+		}
+	}
+
+	long run(Iterator<int[][]> input, final Writer output) throws IOException, InterruptedException {
+		puzzles = unique = multiple = unsolvable = equivalent = 0;
+
+		// Results waiting to be written, in the order of the puzzles; a null
+		// result marks the end
+		final BlockingQueue<Future<Solved>> pending = new ArrayBlockingQueue<>(queueCapacity);
+		final PuzzleIndex index = new PuzzleIndex();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+
+		// Canonical forms are found by the workers, but added to the index in the
+		// order of the puzzles, so that the first of equivalent puzzles is always
+		// the same
+		Future<?> written = writer.submit(() -> {
+			for (Solved solved; (solved = pending.take().get()) != null;) {
+				output.write(solved.line);
+				if (solved.key != null) {
+					long first = index.add(solved.key, solved.number);
+					if (first != solved.number) {
+						countEquivalent();
+						output.write(' ');
+						output.write(Long.toString(first));
+					}
+				}
+				output.write('\n');
+			}
+			output.flush();
+			return null;
+		});
+
+		try {
+			// The results of the puzzles read before an invalid one are still written
+			RuntimeException readError = null;
+			try {
+				for (long number = 1; input.hasNext(); number++) {
+					final int[][] puzzle = input.next();
+					final long puzzleNumber = number;
+					enqueue(pending, pool.submit(() -> solve(puzzleNumber, puzzle)), written);
+				}
+			} catch (IllegalArgumentException | UncheckedIOException e) {
+				readError = e;
+			}
+			enqueue(pending, CompletableFuture.completedFuture(null), written);
+
+			written.get();
+			if (readError != null)
+				throw readError;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			writer.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+
+		return puzzles;
+	}
+
+	// Waits for room in the queue, unless writing has stopped (failed)
+	private static void enqueue(BlockingQueue<Future<Solved>> pending, Future<Solved> result, Future<?> written)
+	    throws InterruptedException, ExecutionException {
+		while (!pending.offer(result, 100, TimeUnit.MILLISECONDS))
+			if (written.isDone()) {
+				written.get();
+				throw new IllegalStateException("A escrita dos resultados terminou antes do fim");
+			}
+	}
+
+	private Solved solve(long number, int[][] puzzle) {
+		long start = System.nanoTime();
+		SudokuSolver.Result result = solver.search(puzzle, 2, null);
+		long time = System.nanoTime() - start;
+
+		count(result.solutions);
+
+		StringBuilder line = new StringBuilder(128);
+		line.append(number).append(' ').append(result.solutions).append(' ').append(time).append(' ')
+		    .append(result.nodes).append(' ');
+		if (result.solved())
+			SudokuAux.appendOneLine(line, result.solution);
+		else
+			line.append('-');
+
+		BoardSnapshot key = findEquivalent && PuzzleIndex.canIndex(puzzle) ? PuzzleIndex.key(puzzle) : null;
+		return new Solved(number, line.toString(), key);
+	}
+
+	private synchronized void count(long solutions) {
+		puzzles++;
+		if (solutions == 0)
+			unsolvable++;
+		else if (solutions == 1)
+			unique++;
+		else
+			multiple++;
+	}
+
+	private synchronized void countEquivalent() {
+		equivalent++;
+	}
+
+	synchronized String summary() {
+		return puzzles + " tabuleiros: " + unique + " com solução única, " + multiple + " com várias soluções, "
+		    + unsolvable + " sem solução" + (findEquivalent ? ", " + equivalent + " equivalentes a outros" : "");
+	}
+
+	// Generates `count` puzzles with up to `blanks` blank positions on `workers`
+	// threads (see SudokuGenerator.generateInto) and writes them in the one-line
+	// layout, one per line, in the order they are made; returns how many were
+	// written
+	static long generate(long count, int workers, int sectorSize, int blanks, long seed, Writer output)
+	    throws IOException, InterruptedException {
+		if (workers < 1)
+			throw new IllegalArgumentException("O número de tarefas deve ser positivo");
+
+		BlockingQueue<SudokuGenerator.Puzzle> queue = new ArrayBlockingQueue<>(workers * DEFAULT_QUEUE_PER_WORKER);
+		ExecutorService generators = SudokuGenerator.generateInto(queue, count, workers, seed, sectorSize, blanks);
+		try {
+			StringBuilder line = new StringBuilder(128);
+			long written = 0;
+			while (written < count) {
+				SudokuGenerator.Puzzle puzzle = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (puzzle == null) {
+					if (generators.isTerminated() && queue.isEmpty())
+						throw new IllegalStateException("A geração de tabuleiros terminou antes do fim");
+					continue;
+				}
+
+				line.setLength(0);
+				output.append(SudokuAux.appendOneLine(line, puzzle.clues).append('\n'));
+				written++;
+			}
+			output.flush();
+
+			return written;
+		} finally {
+			generators.shutdownNow();
+		}
+	}
+
+	// Solver by its name on the command line: bitmask (the default), dlx (exact
+	// cover) or parallel (one puzzle at a time on every processor, for large
+	// boards; best with a single worker)
+	static SudokuSolver solver(String name) {
+		switch (name) {
+		case "bitmask":
+			return new BitmaskSolver();
+		case "dlx":
+			return new DancingLinksSolver();
+		case "parallel":
+			return new ParallelSolver();
+		default:
+			throw new IllegalArgumentException("Resolvedor desconhecido: " + name);
+		}
+	}
+
+	// Usage: SudokuBatch [-e] <puzzles file> <results file> [workers] [solver]
+	// With -e, equivalent puzzles are looked for. Or, to generate puzzles:
+	// SudokuBatch -g <count> <puzzles file> [workers] [blanks]
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length > 0 && args[0].equals("-g")) {
+			mainGenerate(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		boolean findEquivalent = args.length > 0 && args[0].equals("-e");
+		if (findEquivalent)
+			args = Arrays.copyOfRange(args, 1, args.length);
+
+		if (args.length < 2) {
+			System.out.println("Utilização: SudokuBatch [-e] <ficheiro de tabuleiros> <ficheiro de resultados> [tarefas]"
+			    + " [bitmask|dlx|parallel]");
+			return;
+		}
+
+		int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		SudokuBatch batch;
+		try {
+			batch = new SudokuBatch(workers, workers * DEFAULT_QUEUE_PER_WORKER,
+			    solver(args.length > 3 ? args[3] : "bitmask"), findEquivalent);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			batch.run(args[0], args[1]);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		} catch (IOException e) {
+			System.out.println("o ficheiro " + args[1] + " não pode ser escrito");
+		}
+
+		System.out.println(batch.summary() + " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+	}
+
+	private static void mainGenerate(String[] args) throws InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Utilização: SudokuBatch -g <quantidade> <ficheiro de tabuleiros> [tarefas]"
+			    + " [posições em branco]");
+			return;
+		}
+
+		long count = Long.parseLong(args[0]);
+		int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int blanks = args.length > 3 ? Integer.parseInt(args[3]) : SudokuAux.BOARD_SIZE * SudokuAux.BOARD_SIZE;
+
+		long start = System.nanoTime();
+		try (Writer output = new BufferedWriter(
+		    new OutputStreamWriter(Files.newOutputStream(Paths.get(args[1])), StandardCharsets.US_ASCII), 1 << 16)) {
+			long written = generate(count, workers, SudokuAux.SECTOR_SIZE, blanks, System.nanoTime(), output);
+			System.out.println(written + " tabuleiros gerados (" + (System.nanoTime() - start) / 1000000 + " ms)");
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		} catch (IOException e) {
+			System.out.println("o ficheiro " + args[1] + " não pode ser escrito");
+		}
+	}
+}
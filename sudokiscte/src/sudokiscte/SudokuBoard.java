@@ -1,51 +1,342 @@
 package sudokiscte;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
 class SudokuBoard {
 	static final int BOARD_SIZE = SudokuAux.BOARD_SIZE;
 	static final int SECTOR_SIZE = SudokuAux.SECTOR_SIZE;
 
-	static final int PLAYED_LINE_INDEX = 0;
-	static final int PLAYED_COLUMN_INDEX = 1;
+	// Only changed through the methods below (see getBoard and getInitialBoard);
+	// a board is not thread-safe, and is meant to be used by one thread at a time
+	private int[][] board;
+	private BoardSnapshot initialBoard;
+
+	// Zobrist hash of the board, kept up to date by every change to it
+	private final Zobrist zobrist;
+	private long hash;
+
+	// The board packed as in BoardSnapshot, kept in step with it so that
+	// snapshots are a copy of a few longs
+	private long[] packedBoard;
+	private final int valueBits;
+
+	// Moves made (and undone) on the board, for undo and redo
+	private MoveJournal journal;
+
+	// Number of lines (and columns), and of lines (and columns) in each sector
+	private final int size;
+	private final int sectorSize;
+
+	// Bitmasks of the values present in each line, column and sector: bit v is set
+	// when value v occurs at least once in that line, column or sector
+	private long[] lineMask;
+	private long[] columnMask;
+	private long[] sectorMask;
+
+	// How many times each value occurs in each line, column and sector (at
+	// [unit * (size + 1) + value]); a value occurs at most size times in a unit
+	private byte[] lineCount;
+	private byte[] columnCount;
+	private byte[] sectorCount;
+
+	// Repeated occurrences (every occurrence of a value beyond the first) in each
+	// line, column and sector, and the sum of all of them
+	private int[] lineConflicts;
+	private int[] columnConflicts;
+	private int[] sectorConflicts;
+	private int conflicts = 0;
+
+	private int filledPositions = 0;
+
+	// Blank positions (numbered line * size + column), in no particular order, and
+	// where each position is in that array (-1 when it is not blank)
+	private int[] blankCells;
+	private int[] blankIndex;
+	private int blankCount = 0;
+
+	// Notified of every change to the board (eg. a renderer)
+	private SudokuListener[] listeners = NO_LISTENERS;
+	private static final SudokuListener[] NO_LISTENERS = new SudokuListener[0];
+
+	// Source of randomness for this board (blanking and random plays); seeded, so
+	// that simulations can be reproduced
+	private SplittableRandom random;
+
+	// Boards can be of any supported sector size (9x9, 16x16, 25x25, ...); the size
+	// is taken from the number of lines of the initial board
+	public SudokuBoard(int[][] initialBoard, double blankProportion) {
+		this(initialBoard, blankProportion, new SplittableRandom());
+	}
 
-	public int[][] board;
-	public int[][] initialBoard;
+	public SudokuBoard(int[][] initialBoard, double blankProportion, long seed) {
+		this(initialBoard, blankProportion, new SplittableRandom(seed));
+	}
 
-	// Array of integers with as many lines as blank positions in the board, and 2
-	// positions for each of those (line and column, respectively)
-	private int[][] plays;
+	private SudokuBoard(int[][] initialBoard, double blankProportion, SplittableRandom random) {
+		this(BoardGeometry.ofBoard(initialBoard).sectorSize, random);
 
-	// To be used as index of the last move played (offset by one from the position
-	// the play has been stored in)
-	// Eg. No move played, index is 0, and undo returns without doing a thing
-	// Eg. Index 1, one move played, gets coordinates from row 0 in **plays** array
-	// sets it back to 0 in board and deduces 1 from the index, making it 0 again
-	private int playedPositions = 0;
+		// The given board is left untouched; blanking keeps its solution unique on
+		// boards up to 9x9 (see SudokuGenerator.MAX_UNIQUE_BLANKING_SECTOR_SIZE), and
+		// larger boards are blanked at random
+		SudokuGenerator generator = new SudokuGenerator(sectorSize, new Random(random.nextLong()));
+		this.initialBoard = BoardSnapshot.of(sectorSize <= SudokuGenerator.MAX_UNIQUE_BLANKING_SECTOR_SIZE
+		    ? generator.blank(initialBoard, blankProportion)
+		    : generator.blankUnchecked(initialBoard, blankProportion));
+
+		copyBoard(this.initialBoard);
+
+		this.journal = new MoveJournal(countBlankPositions());
+	}
+
+	// A board in the given state, with no history of moves (eg. a saved game);
+	// nothing is blanked
+	SudokuBoard(BoardSnapshot initialBoard, BoardSnapshot board) {
+		this(initialBoard, board, new SplittableRandom());
+	}
+
+	// Same, with random plays from the given seed (eg. drawn with nextSeed from
+	// the board this one is a copy or a later state of)
+	SudokuBoard(BoardSnapshot initialBoard, BoardSnapshot board, long seed) {
+		this(initialBoard, board, new SplittableRandom(seed));
+	}
+
+	private SudokuBoard(BoardSnapshot initialBoard, BoardSnapshot board, SplittableRandom random) {
+		this(initialBoard.sectorSize, random);
+		if (board.sectorSize != sectorSize)
+			throw new IllegalArgumentException("O estado não tem o tamanho deste tabuleiro");
 
-	public SudokuBoard(int[][] initialBoard, double blankProportion) {
 		this.initialBoard = initialBoard;
-		SudokuAux.blankBoardProportionally(this.initialBoard, blankProportion);
+		copyBoard(board);
 
-		copyInitialBoard();
+		this.journal = new MoveJournal(countBlankPositions());
+	}
 
-		this.plays = new int[countBlankPositions()][2];
+	private SudokuBoard(int sectorSize, SplittableRandom random) {
+		this.sectorSize = sectorSize;
+		this.size = sectorSize * sectorSize;
+
+		this.lineMask = new long[size];
+		this.columnMask = new long[size];
+		this.sectorMask = new long[size];
+		this.lineCount = new byte[size * (size + 1)];
+		this.columnCount = new byte[size * (size + 1)];
+		this.sectorCount = new byte[size * (size + 1)];
+		this.lineConflicts = new int[size];
+		this.columnConflicts = new int[size];
+		this.sectorConflicts = new int[size];
+		this.blankCells = new int[size * size];
+		this.blankIndex = new int[size * size];
+		this.random = random;
+
+		this.zobrist = Zobrist.of(sectorSize);
+		this.valueBits = BoardSnapshot.valueBits(size);
+		this.packedBoard = new long[BoardSnapshot.wordCount(sectorSize)];
 	}
 
+	// Positions that can be played (blank on the initial board)
 	private int countBlankPositions() {
 		int count = 0;
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++)
-				if (board[i][j] == 0)
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				if (initialBoard.get(i, j) == 0)
 					count++;
 
 		return count;
 	}
 
-	private void copyInitialBoard() {
-		this.board = new int[BOARD_SIZE][BOARD_SIZE];
+	private void copyBoard(BoardSnapshot snapshot) {
+		this.board = new int[size][size];
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				this.board[i][j] = snapshot.get(i, j);
+
+		snapshot.copyInto(packedBoard);
+		rebuildIndices();
+	}
+
+	int getSize() {
+		return size;
+	}
+
+	int getSectorSize() {
+		return sectorSize;
+	}
+
+	void setRandomSeed(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	// A seed for the random plays of boards made from this one (eg. replays, or a
+	// game brought back from a BoardStore), so that they can be reproduced when
+	// this board's can
+	long nextSeed() {
+		return random.nextLong();
+	}
+
+	int sectorOf(int line, int column) {
+		return (line / sectorSize) * sectorSize + column / sectorSize;
+	}
 
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++)
-				this.board[i][j] = initialBoard[i][j];
+	// Single entry point for every change to the board, keeping the masks and
+	// conflict counters in sync with it and notifying the listeners
+	private void place(int line, int column, int value) {
+		int old = board[line][column];
+		if (old == value)
+			return;
+
+		if (old != 0)
+			removeFromIndices(line, column, old);
+		else
+			removeBlank(line * size + column);
+
+		board[line][column] = value;
+		BoardSnapshot.set(packedBoard, valueBits, line * size + column, value);
+		hash = zobrist.update(hash, line * size + column, old, value);
+
+		if (value != 0)
+			addToIndices(line, column, value);
+		else
+			addBlank(line * size + column);
+
+		for (SudokuListener listener : listeners)
+			listener.cellChanged(this, line, column, old, value);
+	}
+
+	void addListener(SudokuListener listener) {
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+	}
+
+	void removeListener(SudokuListener listener) {
+		for (int k = 0; k < listeners.length; k++)
+			if (listeners[k] == listener) {
+				SudokuListener[] remaining = new SudokuListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, remaining, 0, k);
+				System.arraycopy(listeners, k + 1, remaining, k, remaining.length - k);
+				listeners = remaining;
+				return;
+			}
+	}
+
+	SudokuListener[] getListeners() {
+		return listeners.clone();
+	}
+
+	private void notifyHistory(SudokuListener.HistoryChange change, int move) {
+		for (SudokuListener listener : listeners)
+			listener.historyChanged(this, change, move);
+	}
+
+	private void addBlank(int cell) {
+		blankIndex[cell] = blankCount;
+		blankCells[blankCount++] = cell;
+	}
+
+	// Moves the last blank position into the place of the removed one
+	private void removeBlank(int cell) {
+		int index = blankIndex[cell];
+		int last = blankCells[--blankCount];
+		blankCells[index] = last;
+		blankIndex[last] = index;
+		blankIndex[cell] = -1;
+	}
+
+	private void addToIndices(int line, int column, int value) {
+		int sector = sectorOf(line, column);
+		long bit = 1L << value;
+
+		if (++lineCount[line * (size + 1) + value] == 1)
+			lineMask[line] |= bit;
+		else {
+			lineConflicts[line]++;
+			conflicts++;
+		}
+
+		if (++columnCount[column * (size + 1) + value] == 1)
+			columnMask[column] |= bit;
+		else {
+			columnConflicts[column]++;
+			conflicts++;
+		}
+
+		if (++sectorCount[sector * (size + 1) + value] == 1)
+			sectorMask[sector] |= bit;
+		else {
+			sectorConflicts[sector]++;
+			conflicts++;
+		}
+
+		filledPositions++;
+	}
+
+	private void removeFromIndices(int line, int column, int value) {
+		int sector = sectorOf(line, column);
+		long bit = 1L << value;
+
+		if (--lineCount[line * (size + 1) + value] == 0)
+			lineMask[line] &= ~bit;
+		else {
+			lineConflicts[line]--;
+			conflicts--;
+		}
+
+		if (--columnCount[column * (size + 1) + value] == 0)
+			columnMask[column] &= ~bit;
+		else {
+			columnConflicts[column]--;
+			conflicts--;
+		}
+
+		if (--sectorCount[sector * (size + 1) + value] == 0)
+			sectorMask[sector] &= ~bit;
+		else {
+			sectorConflicts[sector]--;
+			conflicts--;
+		}
+
+		filledPositions--;
+	}
+
+	private void rebuildIndices() {
+		for (int k = 0; k < size; k++) {
+			lineMask[k] = columnMask[k] = sectorMask[k] = 0;
+			lineConflicts[k] = columnConflicts[k] = sectorConflicts[k] = 0;
+		}
+		Arrays.fill(lineCount, (byte) 0);
+		Arrays.fill(columnCount, (byte) 0);
+		Arrays.fill(sectorCount, (byte) 0);
+		conflicts = 0;
+		filledPositions = 0;
+		blankCount = 0;
+		hash = zobrist.hash(board);
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				if (board[i][j] != 0) {
+					addToIndices(i, j, board[i][j]);
+					blankIndex[i * size + j] = -1;
+				} else
+					addBlank(i * size + j);
+	}
+
+	// Values already present in the line, column or sector of the position
+	long usedValues(int line, int column) {
+		return lineMask[line] | columnMask[column] | sectorMask[sectorOf(line, column)];
+	}
+
+	// Values (bit v for value v) that can be played in the position without
+	// repeating in its line, column or sector
+	long candidates(int line, int column) {
+		return (((1L << size) - 1) << 1) & ~usedValues(line, column);
+	}
+
+	// Equal boards (of the same size) have equal hashes; different boards almost
+	// never do
+	long getHash() {
+		return hash;
 	}
 
 	int getValue(int i, int j) {
@@ -53,194 +344,274 @@ class SudokuBoard {
 	}
 
 	int getInitialValue(int i, int j) {
-		return this.initialBoard[i][j];
+		return this.initialBoard.get(i, j);
+	}
+
+	// Copies of the current and initial boards
+	int[][] getBoard() {
+		return copy(board);
+	}
+
+	int[][] getInitialBoard() {
+		return initialBoard.toBoard();
+	}
+
+	BoardSnapshot getInitialSnapshot() {
+		return initialBoard;
+	}
+
+	// The current state of the board, which later changes do not affect
+	BoardSnapshot snapshot() {
+		return BoardSnapshot.of(sectorSize, packedBoard);
+	}
+
+	// Brings the board to the state of the snapshot, changing (and notifying) only
+	// the positions that differ; the history of moves is left as it is
+	void restore(BoardSnapshot snapshot) {
+		if (snapshot.sectorSize != sectorSize)
+			throw new IllegalArgumentException("O estado não tem o tamanho deste tabuleiro");
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				place(i, j, snapshot.get(i, j));
+
+		notifyHistory(SudokuListener.HistoryChange.REPLACE, MoveJournal.NO_MOVE);
+	}
+
+	private static int[][] copy(int[][] board) {
+		int[][] copy = new int[board.length][];
+		for (int i = 0; i < board.length; i++)
+			copy[i] = board[i].clone();
+		return copy;
+	}
+
+	// Solution for the current state of the board, or null if there is none
+	int[][] solve(SudokuSolver solver) {
+		return solver.solve(board);
 	}
 
-	// For loading saved games, no validations in place
+	// For loading saved games: only the value is checked, not the rules
 	public void setInBoard(int i, int j, int value) {
-		this.board[i][j] = value;
+		if (!SudokuAux.validElement(value, size))
+			throw new IllegalArgumentException("Valor inválido: " + value);
+
+		place(i, j, value);
+		notifyHistory(SudokuListener.HistoryChange.REPLACE, MoveJournal.NO_MOVE);
 	}
 
-	// For loading saved games, no validations in place
+	// For loading saved games: only the value is checked, not the rules
 	public void setInInitial(int i, int j, int value) {
-		this.initialBoard[i][j] = value;
+		this.initialBoard = initialBoard.with(i, j, value);
+		notifyHistory(SudokuListener.HistoryChange.REPLACE, MoveJournal.NO_MOVE);
 	}
 
 	boolean play(int i, int j, int value) {
 		// Check if value is a valid play
-		if (!SudokuAux.validElement(value))
+		if (!SudokuAux.validElement(value, size))
 			return false;
 		// Check if initial board position is empty or set; return false if set
-		if (initialBoard[i][j] != 0)
+		if (initialBoard.get(i, j) != 0)
 			return false;
 
-		board[i][j] = value;
-		storePlay(i, j);
+		long start = SudokuMetrics.start();
+		int move = MoveJournal.pack(i, j, board[i][j], value);
+		journal.record(move);
+		place(i, j, value);
 
 		validatePosition(i, j);
+		notifyHistory(SudokuListener.HistoryChange.PLAY, move);
+		SudokuMetrics.stop(SudokuMetrics.Operation.MOVE, start);
 
 		return true;
 	}
 
-	void storePlay(int line, int column) {
-		plays[playedPositions][PLAYED_LINE_INDEX] = line;
-		plays[playedPositions][PLAYED_COLUMN_INDEX] = column;
+	// Moves made so far, oldest first (see MoveJournal), followed by the moves
+	// undone that can still be redone
+	int[] getHistory() {
+		return journal.toArray();
+	}
 
-		playedPositions++;
+	// How many moves of the history have been made
+	int getHistoryPosition() {
+		return journal.position();
 	}
 
+	// The last move made (see MoveJournal), or MoveJournal.NO_MOVE
+	int lastMove() {
+		return journal.last();
+	}
+
+	// Replaces the history (eg. with the one of a saved game), without changing
+	// the board
+	void restoreHistory(int[] history, int position) {
+		journal.restore(history, position);
+		notifyHistory(SudokuListener.HistoryChange.REPLACE, MoveJournal.NO_MOVE);
+	}
+
+	// Replaces the whole game (eg. with a saved one): initial board, values and
+	// history; the listeners are told of the replacement once
+	void replace(BoardSnapshot initialBoard, BoardSnapshot board, int[] history, int position) {
+		if (initialBoard.sectorSize != sectorSize || board.sectorSize != sectorSize)
+			throw new IllegalArgumentException("O estado não tem o tamanho deste tabuleiro");
+
+		journal.restore(history, position);
+		this.initialBoard = initialBoard;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				place(i, j, board.get(i, j));
+
+		notifyHistory(SudokuListener.HistoryChange.REPLACE, MoveJournal.NO_MOVE);
+	}
+
+	// Undoes the last move made, bringing back the value the position had before
 	void undo() {
-		if (playedPositions <= 0) {
-			playedPositions = 0;
+		int move = journal.undo();
+		if (move == MoveJournal.NO_MOVE)
 			return;
-		}
 
-		if (playedPositions > plays.length + 1)
-			playedPositions = plays.length;
+		long start = SudokuMetrics.start();
+		place(MoveJournal.line(move), MoveJournal.column(move), MoveJournal.oldValue(move));
+		notifyHistory(SudokuListener.HistoryChange.UNDO, move);
+		SudokuMetrics.stop(SudokuMetrics.Operation.MOVE, start);
+	}
 
-		int[] lastPlay = plays[playedPositions - 1];
-		int line = lastPlay[PLAYED_LINE_INDEX];
-		int column = lastPlay[PLAYED_COLUMN_INDEX];
-		this.board[line][column] = 0;
+	// Makes again the last move undone; returns false if there is none
+	boolean redo() {
+		int move = journal.redo();
+		if (move == MoveJournal.NO_MOVE)
+			return false;
 
-		playedPositions--;
+		long start = SudokuMetrics.start();
+		place(MoveJournal.line(move), MoveJournal.column(move), MoveJournal.newValue(move));
+		notifyHistory(SudokuListener.HistoryChange.REDO, move);
+		SudokuMetrics.stop(SudokuMetrics.Operation.MOVE, start);
+		return true;
 	}
 
-	void randomPlay() {
-		int count = 0, i = 0, j = 0, value = 0;
+	// Undoes or redoes moves until exactly `position` moves of the history are made
+	void seek(int position) {
+		if (position < 0 || position > journal.size())
+			throw new IllegalArgumentException("Posição inválida no histórico: " + position);
 
-		while (count < 1000) {
-			i = (int) (Math.random() * BOARD_SIZE);
-			j = (int) (Math.random() * BOARD_SIZE);
+		while (journal.position() > position)
+			undo();
+		while (journal.position() < position)
+			redo();
+	}
 
-			if (getValue(i, j) == 0)
-				break;
+	// Goes back to the given move and makes every move from it on again, one at a
+	// time (eg. for listeners that follow the game)
+	void replayFrom(int move) {
+		seek(move);
+		while (redo())
+			;
+	}
 
-			count++;
-		}
+	// Plays, in a random blank position, a random value that does not repeat in its
+	// line, column or sector; returns false if no blank position has such a value
+	boolean randomPlay() {
+		if (blankCount == 0)
+			return false;
 
-		if (count >= 1000) {
-			i = 0;
-			j = 0;
-			while (i < BOARD_SIZE) {
-				while (j < BOARD_SIZE) {
-					if (board[i][j] == 0)
-						break;
-					j++;
-				}
-				i++;
-			}
-			count++;
-		}
+		int start = random.nextInt(blankCount);
+		for (int k = 0; k < blankCount; k++) {
+			int cell = blankCells[(start + k) % blankCount];
+			int line = cell / size;
+			int column = cell % size;
 
-		count = 0;
-		while (count < 1000) {
-			value = (int) ((Math.random() * BOARD_SIZE) + 1);
-			boolean result = uniqueValueInSector(value, i, j);
-			count++;
+			long candidates = candidates(line, column);
+			if (candidates == 0 || initialBoard.get(line, column) != 0)
+				continue;
 
-			if (result)
-				break;
-		}
+			// Skip a random number of candidates, then take the next one
+			for (int skip = random.nextInt(Long.bitCount(candidates)); skip > 0; skip--)
+				candidates &= candidates - 1;
 
-		if (count >= 1000) {
-			for (value = 0; value <= BOARD_SIZE; value++) {
-				boolean result = SudokuAux.validSectorPlay(i, j, value, board);
-				count++;
-				if (result)
-					break;
-			}
+			return play(line, column, Long.numberOfTrailingZeros(candidates));
 		}
 
-		play(i, j, value);
+		return false;
 	}
 
 	void reset() {
 		for (int i = 0; i < board.length; i++)
 			for (int j = 0; j < board[i].length; j++)
-				board[i][j] = initialBoard[i][j];
-
-		for (int i = 0; i < plays.length; i++) {
-			plays[i][PLAYED_LINE_INDEX] = 0;
-			plays[i][PLAYED_COLUMN_INDEX] = 0;
-		}
+				place(i, j, initialBoard.get(i, j));
 
-		playedPositions = 0;
+		journal.clear();
+		notifyHistory(SudokuListener.HistoryChange.RESET, MoveJournal.NO_MOVE);
 	}
 
 	boolean validateSector(int sectorV, int sectorH) {
-		for (int i = (sectorV / SECTOR_SIZE) * SECTOR_SIZE; i < (sectorV / SECTOR_SIZE) * SECTOR_SIZE + SECTOR_SIZE; i++) {
-			for (int j = (sectorH / SECTOR_SIZE) * SECTOR_SIZE; j < (sectorH / SECTOR_SIZE) * SECTOR_SIZE
-			    + SECTOR_SIZE; j++) {
-				if (!uniqueValueInSector(board[i][j], i, j))
-					return false;
-			}
-		}
-
-		return true;
+		return sectorConflicts[sectorOf(sectorV, sectorH)] == 0;
 	}
 
 	boolean uniqueValueInSector(int value, int sectorV, int sectorH) {
 		if (value == 0)
 			return true;
 
-		for (int i = (sectorV / SECTOR_SIZE) * SECTOR_SIZE; i < (sectorV / SECTOR_SIZE) * SECTOR_SIZE + SECTOR_SIZE; i++) {
-			for (int j = (sectorH / SECTOR_SIZE) * SECTOR_SIZE; j < (sectorH / SECTOR_SIZE) * SECTOR_SIZE
-			    + SECTOR_SIZE; j++) {
-				if (board[i][j] == value && (i != sectorV || j != sectorH))
-					return false;
-			}
-		}
-		return true;
+		// Occurrences of the value in the sector, not counting the position itself
+		int count = sectorCount[sectorOf(sectorV, sectorH) * (size + 1) + value];
+		if (board[sectorV][sectorH] == value)
+			count--;
+
+		return count == 0;
 	}
 
 	boolean validateColumn(int column) {
-		try {
-			for (int i = 0; i < BOARD_SIZE; i++) {
-				for (int j = i + 1; j < BOARD_SIZE; j++) {
-					if (board[i][column] == board[j][column] && board[i][column] != 0)
-						throw new IllegalArgumentException("Jogada inválida na coluna " + column);
-				}
-			}
-
-			return true;
-		} catch (IllegalArgumentException e) {
-			System.out.println(e.getMessage());
-			return false;
-		}
+		return columnConflicts[column] == 0;
 	}
 
 	boolean validateLine(int line) {
-		try {
-			for (int i = 0; i < BOARD_SIZE; i++) {
-				for (int j = i + 1; j < BOARD_SIZE; j++) {
-					if (board[line][i] == board[line][j] && board[line][i] != 0) {
-						throw new IllegalArgumentException("Jogada inválida na linha " + line);
-					}
-				}
-			}
+		return lineConflicts[line] == 0;
+	}
 
-			return true;
-		} catch (IllegalArgumentException e) {
-			System.out.println(e.getMessage());
-			return false;
-		}
+	// Whether the position is outside every line, column and sector with repeated
+	// values; used for rendering, so nothing is reported
+	boolean validCell(int line, int column) {
+		return lineConflicts[line] == 0 && columnConflicts[column] == 0
+		    && sectorConflicts[sectorOf(line, column)] == 0;
 	}
 
+	// Whether the line, column and sector of the position have no repeated values;
+	// otherwise, the first of them that has is reported as a conflict to the
+	// listeners and the metrics
 	boolean validatePosition(int line, int column) {
-		return (validateLine(line) && validateColumn(column) && validateSector(line, column));
+		long start = SudokuMetrics.start();
+
+		boolean valid = true;
+		if (!validateLine(line))
+			valid = reportConflict(Conflict.Reason.LINE, line, line, column);
+		else if (!validateColumn(column))
+			valid = reportConflict(Conflict.Reason.COLUMN, column, line, column);
+		else if (!validateSector(line, column))
+			valid = reportConflict(Conflict.Reason.SECTOR, sectorOf(line, column), line, column);
+
+		SudokuMetrics.stop(SudokuMetrics.Operation.VALIDATION, start);
+		return valid;
 	}
 
-	boolean isGameFinished() {
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				if (board[i][j] == 0)
-					return false;
+	// Tells the listeners and the metrics of the conflict, if any of them is
+	// listening (nothing is created otherwise); returns false, the validity of
+	// the position
+	private boolean reportConflict(Conflict.Reason reason, int unit, int line, int column) {
+		if (listeners.length == 0 && !SudokuMetrics.isEnabled())
+			return false;
 
-				if (!validateLine(i) || !validateColumn(i) || !validateSector(i, j))
-					return false;
-			}
+		Conflict conflict = new Conflict(reason, unit, line, column, board[line][column]);
+		for (SudokuListener listener : listeners)
+			listener.conflictFound(this, conflict);
+		SudokuMetrics.conflict(conflict);
 
-		return true;
+		return false;
+	}
+
+	// Repeated occurrences in every line, column and sector (see lineConflicts)
+	int getConflictCount() {
+		return conflicts;
+	}
+
+	boolean isGameFinished() {
+		return filledPositions == size * size && conflicts == 0;
 	}
-}
\ No newline at end of file
+}
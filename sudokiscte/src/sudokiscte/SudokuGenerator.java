@@ -0,0 +1,202 @@
+package sudokiscte;
+
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Generates puzzles with a unique solution: a random complete grid is filled in,
+// then values are blanked one at a time, putting back any whose removal would
+// let the puzzle have a second solution
+class SudokuGenerator {
+	// Largest sector size whose boards are blanked keeping the solution unique
+	// when a game starts: beyond it, a check may take the solver minutes (eg. most
+	// of a 25x25 board blank), so games on larger boards use blankUnchecked
+	static final int MAX_UNIQUE_BLANKING_SECTOR_SIZE = 3;
+
+	// Graded by the techniques needed to solve a puzzle without guessing
+	enum Difficulty {
+		EASY, // positions with a single candidate left (naked singles)
+		MEDIUM, // values with a single position left in a unit (hidden singles)
+		HARD // needs more than singles
+	}
+
+	static class Puzzle {
+		final int[][] clues;
+		final int[][] solution;
+		final Difficulty difficulty;
+
+		Puzzle(int[][] clues, int[][] solution, Difficulty difficulty) {
+			this.clues = clues;
+			this.solution = solution;
+			this.difficulty = difficulty;
+		}
+	}
+
+	private final BoardGeometry geometry;
+	private final Random random;
+	private final SudokuSolver counter = new BitmaskSolver();
+
+	SudokuGenerator(int sectorSize) {
+		this(sectorSize, new Random());
+	}
+
+	SudokuGenerator(int sectorSize, Random random) {
+		this.geometry = BoardGeometry.of(sectorSize);
+		this.random = random;
+	}
+
+	// A complete grid, chosen at random
+	int[][] randomGrid() {
+		return new BitmaskSolver(random).solve(new int[geometry.size][geometry.size]);
+	}
+
+	// A puzzle with as few clues as this generator manages to leave
+	Puzzle generate() {
+		return generate(geometry.cells);
+	}
+
+	// A puzzle with up to `blanks` blank positions
+	Puzzle generate(int blanks) {
+		int[][] solution = randomGrid();
+		int[][] clues = removeClues(solution, blanks);
+		return new Puzzle(clues, solution, grade(clues));
+	}
+
+	// Copy of the board with up to `blanks` more of its values blanked, keeping the
+	// solution unique. Fewer positions are blanked when no other value can be
+	// removed without a second solution appearing
+	int[][] removeClues(int[][] board, int blanks) {
+		int[][] puzzle = copy(board);
+		int[] order = shuffledCells();
+
+		for (int k = 0; k < order.length && blanks > 0; k++) {
+			int i = geometry.lineOf[order[k]];
+			int j = geometry.columnOf[order[k]];
+			int value = puzzle[i][j];
+			if (value == 0)
+				continue;
+
+			puzzle[i][j] = 0;
+			if (counter.countSolutions(puzzle, 2) == 1)
+				blanks--;
+			else
+				puzzle[i][j] = value;
+		}
+
+		return puzzle;
+	}
+
+	// Copy of the board with a proportion of its positions blanked. When the board
+	// has a unique solution to begin with, it keeps having one, however long that
+	// takes on large boards (see MAX_UNIQUE_BLANKING_SECTOR_SIZE); otherwise there
+	// is nothing to preserve and positions are blanked at random
+	int[][] blank(int[][] board, double blankProportion) {
+		int blanks = blanksFor(board, blankProportion);
+		if (counter.countSolutions(board, 2) == 1)
+			return removeClues(board, blanks);
+
+		return blankAtRandom(board, blanks);
+	}
+
+	// Copy of the board with a proportion of its positions blanked at random: the
+	// puzzle may have several solutions
+	int[][] blankUnchecked(int[][] board, double blankProportion) {
+		return blankAtRandom(board, blanksFor(board, blankProportion));
+	}
+
+	private int blanksFor(int[][] board, double blankProportion) {
+		int filled = 0;
+		for (int i = 0; i < geometry.size; i++)
+			for (int j = 0; j < geometry.size; j++)
+				if (board[i][j] != 0)
+					filled++;
+
+		return Math.min(filled, (int) (blankProportion * geometry.cells));
+	}
+
+	private int[][] blankAtRandom(int[][] board, int blanks) {
+		int[][] puzzle = copy(board);
+		int[] order = shuffledCells();
+		for (int k = 0; k < order.length && blanks > 0; k++) {
+			int i = geometry.lineOf[order[k]];
+			int j = geometry.columnOf[order[k]];
+			if (puzzle[i][j] != 0) {
+				puzzle[i][j] = 0;
+				blanks--;
+			}
+		}
+
+		return puzzle;
+	}
+
+	// Solves with singles only, as a player would without guessing
+	Difficulty grade(int[][] puzzle) {
+		BitmaskSolver.State state = BitmaskSolver.State.of(geometry, puzzle);
+		if (state == null)
+			throw new IllegalArgumentException("O tabuleiro tem valores repetidos");
+
+		Difficulty difficulty = Difficulty.EASY;
+		while (state.blanks > 0) {
+			int placed = state.placeNakedSingles();
+			if (placed > 0)
+				continue;
+
+			if (placed == 0 && state.placeHiddenSingles() > 0) {
+				difficulty = Difficulty.MEDIUM;
+				continue;
+			}
+
+			return Difficulty.HARD;
+		}
+
+		return difficulty;
+	}
+
+	// Generates `count` puzzles on `threads` workers, each with its own random
+	// generator seeded from `seed`, and puts them in the queue, waiting whenever it
+	// is full. Shutting down the returned executor stops the workers
+	static ExecutorService generateInto(final BlockingQueue<Puzzle> queue, long count, int threads, long seed,
+	    final int sectorSize, final int blanks) {
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final AtomicLong remaining = new AtomicLong(count);
+
+		for (int t = 0; t < threads; t++) {
+			final SudokuGenerator generator = new SudokuGenerator(sectorSize, new Random(seed + t));
+			workers.execute(() -> {
+				try {
+					while (remaining.getAndDecrement() > 0 && !Thread.currentThread().isInterrupted())
+						queue.put(generator.generate(blanks));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+
+		workers.shutdown();
+		return workers;
+	}
+
+	private int[] shuffledCells() {
+		int[] order = new int[geometry.cells];
+		for (int k = 0; k < order.length; k++)
+			order[k] = k;
+
+		for (int k = order.length - 1; k > 0; k--) {
+			int other = random.nextInt(k + 1);
+			int swap = order[k];
+			order[k] = order[other];
+			order[other] = swap;
+		}
+
+		return order;
+	}
+
+	private static int[][] copy(int[][] board) {
+		int[][] copy = new int[board.length][];
+		for (int i = 0; i < board.length; i++)
+			copy[i] = board[i].clone();
+		return copy;
+	}
+}
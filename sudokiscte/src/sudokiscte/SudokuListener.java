@@ -0,0 +1,24 @@
+package sudokiscte;
+
+// Receives the changes made to a SudokuBoard, as they are made (plays, undos,
+// resets, loading of saved games, ...), the changes to its history of moves and
+// the conflicts found by plays; listeners implement only what they need
+interface SudokuListener {
+	// How the history of moves changed: a move played, undone or redone, the board
+	// reset, or the board or its history replaced (eg. by loading a saved game)
+	enum HistoryChange {
+		PLAY, UNDO, REDO, RESET, REPLACE
+	}
+
+	default void cellChanged(SudokuBoard board, int line, int column, int oldValue, int newValue) {
+	}
+
+	// Told after the board has changed; move is as packed by MoveJournal, or
+	// MoveJournal.NO_MOVE for resets and replacements
+	default void historyChanged(SudokuBoard board, HistoryChange change, int move) {
+	}
+
+	// A play left a value repeated in the line, column or sector of the position
+	default void conflictFound(SudokuBoard board, Conflict conflict) {
+	}
+}
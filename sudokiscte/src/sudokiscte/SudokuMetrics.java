@@ -0,0 +1,293 @@
+package sudokiscte;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Counts and times what games spend their time on (plays, validations, repaints,
+// saves and loads), and counts conflicts by reason. Off unless the property
+// sudokiscte.metrics is true or it is turned on (eg. through JMX): when off,
+// instrumented code only reads a flag. Counters are shared by every thread and
+// written without locks; what is measured is also passed to the sinks added
+class SudokuMetrics {
+	enum Operation {
+		MOVE, VALIDATION, REPAINT, SAVE, LOAD
+	}
+
+	// Receives every measure taken, eg. to send it to a monitoring system; called
+	// on the thread that took it
+	interface Sink {
+		void timed(Operation operation, long nanos);
+
+		void failed(Operation operation);
+
+		void conflict(Conflict conflict);
+	}
+
+	private static volatile boolean enabled = Boolean.getBoolean("sudokiscte.metrics");
+
+	private static final Histogram[] latencies = new Histogram[Operation.values().length];
+	private static final LongAdder[] failures = new LongAdder[Operation.values().length];
+	private static final LongAdder[] conflicts = new LongAdder[Conflict.Reason.values().length];
+
+	private static volatile Sink[] sinks = new Sink[0];
+
+	static {
+		for (int k = 0; k < latencies.length; k++) {
+			latencies[k] = new Histogram();
+			failures[k] = new LongAdder();
+		}
+		for (int k = 0; k < conflicts.length; k++)
+			conflicts[k] = new LongAdder();
+	}
+
+	private SudokuMetrics() {
+	}
+
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	static void setEnabled(boolean enabled) {
+		SudokuMetrics.enabled = enabled;
+	}
+
+	// Start of an operation, to be passed to stop(...); 0 when metrics are off
+	static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	static void stop(Operation operation, long start) {
+		if (start == 0 || !enabled)
+			return;
+
+		long nanos = System.nanoTime() - start;
+		latencies[operation.ordinal()].add(nanos);
+		for (Sink sink : sinks)
+			sink.timed(operation, nanos);
+	}
+
+	static void failed(Operation operation) {
+		if (!enabled)
+			return;
+
+		failures[operation.ordinal()].increment();
+		for (Sink sink : sinks)
+			sink.failed(operation);
+	}
+
+	static void conflict(Conflict conflict) {
+		if (!enabled)
+			return;
+
+		conflicts[conflict.reason.ordinal()].increment();
+		for (Sink sink : sinks)
+			sink.conflict(conflict);
+	}
+
+	static synchronized void addSink(Sink sink) {
+		Sink[] added = Arrays.copyOf(sinks, sinks.length + 1);
+		added[sinks.length] = sink;
+		sinks = added;
+	}
+
+	static synchronized void removeSink(Sink sink) {
+		Sink[] remaining = Arrays.stream(sinks).filter(s -> s != sink).toArray(Sink[]::new);
+		sinks = remaining;
+	}
+
+	static long count(Operation operation) {
+		return latencies[operation.ordinal()].count();
+	}
+
+	static long totalNanos(Operation operation) {
+		return latencies[operation.ordinal()].totalNanos();
+	}
+
+	// Upper bound of the time under which the given fraction of the operations
+	// took (within a factor of 2)
+	static long percentileNanos(Operation operation, double fraction) {
+		return latencies[operation.ordinal()].percentile(fraction);
+	}
+
+	static long failures(Operation operation) {
+		return failures[operation.ordinal()].sum();
+	}
+
+	static long conflicts(Conflict.Reason reason) {
+		return conflicts[reason.ordinal()].sum();
+	}
+
+	static void reset() {
+		for (Histogram histogram : latencies)
+			histogram.reset();
+		for (LongAdder adder : failures)
+			adder.reset();
+		for (LongAdder adder : conflicts)
+			adder.reset();
+	}
+
+	// One line per operation: count, mean, median and 99th percentile, failures;
+	// then the conflicts
+	static String summary() {
+		StringBuilder text = new StringBuilder();
+		for (Operation operation : Operation.values()) {
+			long count = count(operation);
+			text.append(operation).append(": ").append(count).append(" (média ")
+			    .append(count == 0 ? 0 : totalNanos(operation) / count).append(" ns, p50 ")
+			    .append(percentileNanos(operation, 0.5)).append(" ns, p99 ").append(percentileNanos(operation, 0.99))
+			    .append(" ns), ").append(failures(operation)).append(" falhas\n");
+		}
+
+		text.append("conflitos:");
+		for (Conflict.Reason reason : Conflict.Reason.values())
+			text.append(' ').append(reason).append(' ').append(conflicts(reason));
+
+		return text.append('\n').toString();
+	}
+
+	// Makes the metrics readable (and metrics turned on and off) through JMX, as
+	// sudokiscte:type=Metrics
+	static void registerMBean() {
+		try {
+			ObjectName name = new ObjectName("sudokiscte:type=Metrics");
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer()
+				    .registerMBean(new StandardMBean(new Bean(), SudokuMetricsMBean.class), name);
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Bean implements SudokuMetricsMBean {
+		@Override
+		public boolean isEnabled() {
+			return SudokuMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			SudokuMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public long getMoves() {
+			return count(Operation.MOVE);
+		}
+
+		@Override
+		public long getValidations() {
+			return count(Operation.VALIDATION);
+		}
+
+		@Override
+		public long getRepaints() {
+			return count(Operation.REPAINT);
+		}
+
+		@Override
+		public long getSaves() {
+			return count(Operation.SAVE);
+		}
+
+		@Override
+		public long getLoads() {
+			return count(Operation.LOAD);
+		}
+
+		@Override
+		public long getFailedSaves() {
+			return failures(Operation.SAVE);
+		}
+
+		@Override
+		public long getFailedLoads() {
+			return failures(Operation.LOAD);
+		}
+
+		@Override
+		public long getLineConflicts() {
+			return conflicts(Conflict.Reason.LINE);
+		}
+
+		@Override
+		public long getColumnConflicts() {
+			return conflicts(Conflict.Reason.COLUMN);
+		}
+
+		@Override
+		public long getSectorConflicts() {
+			return conflicts(Conflict.Reason.SECTOR);
+		}
+
+		@Override
+		public long percentileNanos(String operation, double fraction) {
+			return SudokuMetrics.percentileNanos(Operation.valueOf(operation), fraction);
+		}
+
+		@Override
+		public String summary() {
+			return SudokuMetrics.summary();
+		}
+
+		@Override
+		public void reset() {
+			SudokuMetrics.reset();
+		}
+	}
+
+	// Times counted in buckets of powers of 2: bucket b has the times from 2^(b-1)
+	// to 2^b - 1 nanoseconds (bucket 0 has the times of 0)
+	private static class Histogram {
+		private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+		private final LongAdder total = new LongAdder();
+
+		Histogram() {
+			for (int b = 0; b < buckets.length; b++)
+				buckets[b] = new LongAdder();
+		}
+
+		void add(long nanos) {
+			buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+			total.add(nanos);
+		}
+
+		long count() {
+			long count = 0;
+			for (LongAdder bucket : buckets)
+				count += bucket.sum();
+			return count;
+		}
+
+		long totalNanos() {
+			return total.sum();
+		}
+
+		long percentile(double fraction) {
+			long[] counts = new long[buckets.length];
+			long count = 0;
+			for (int b = 0; b < buckets.length; b++)
+				count += counts[b] = buckets[b].sum();
+
+			long rank = (long) Math.ceil(fraction * count);
+			long seen = 0;
+			for (int b = 0; b < buckets.length; b++) {
+				seen += counts[b];
+				if (seen >= rank && seen > 0)
+					return b == 0 ? 0 : (1L << b) - 1;
+			}
+
+			return 0;
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets)
+				bucket.reset();
+			total.reset();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package sudokiscte;
+
+// What SudokuMetrics shows through JMX (public, as JMX requires)
+public interface SudokuMetricsMBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getMoves();
+
+	long getValidations();
+
+	long getRepaints();
+
+	long getSaves();
+
+	long getLoads();
+
+	long getFailedSaves();
+
+	long getFailedLoads();
+
+	long getLineConflicts();
+
+	long getColumnConflicts();
+
+	long getSectorConflicts();
+
+	// Operation is one of MOVE, VALIDATION, REPAINT, SAVE or LOAD
+	long percentileNanos(String operation, double fraction);
+
+	String summary();
+
+	void reset();
+}
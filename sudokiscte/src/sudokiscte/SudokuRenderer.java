@@ -0,0 +1,245 @@
+package sudokiscte;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Draws a SudokuBoard into a ColorImage, redrawing only the cells whose value or
+// validity changed since the previous flush. Once attached to a board, it is told
+// of its changes (the positions played, and the lines, columns and sectors that
+// gained or lost repeated values) and, when a frame is requested, redraws only
+// those; a board it does not listen to is compared cell by cell
+class SudokuRenderer implements SudokuListener {
+	private ColorImage img;
+	private int size;
+	private int cellResolution;
+	private BoardGeometry geometry;
+
+	// Board the renderer listens to (null when detached), whether it changed since
+	// the last flush, and whether every cell is to be compared with it (eg. just
+	// after attaching)
+	private SudokuBoard board;
+	private boolean dirty = false;
+	private boolean redrawAll = true;
+
+	// Value and validity of each cell as it is currently drawn in the image, and
+	// validity of each unit (lines, columns then sectors, as in BoardGeometry)
+	private int[][] shownValues;
+	private boolean[][] shownValid;
+	private boolean[] shownUnitValid;
+
+	// Changed since the last flush: positions (line * size + column) and units
+	// whose validity is no longer the one drawn, each listed once
+	private int[] changedCells;
+	private boolean[] cellChanged;
+	private int changedCellCount = 0;
+	private int[] changedUnits;
+	private boolean[] unitChanged;
+	private int changedUnitCount = 0;
+
+	// Cells redrawn by the last flush, as the smallest rectangle that holds them
+	// (empty when last > first)
+	private int firstLine, firstColumn, lastLine = -1, lastColumn = -1;
+
+	// Images of empty boards, drawn once for each number of lines and cell
+	// resolution; only copies of them are handed out
+	private static final ConcurrentHashMap<Long, ColorImage> templates = new ConcurrentHashMap<>();
+
+	// The image is expected to show an empty board (every cell blank and valid)
+	// with the given number of lines
+	SudokuRenderer(ColorImage img, int size) {
+		this(img, size, SudokuAux.cellResolution(size));
+	}
+
+	SudokuRenderer(ColorImage img, int size, int cellResolution) {
+		this.img = img;
+		this.size = size;
+		this.cellResolution = cellResolution;
+		this.geometry = BoardGeometry.of((int) Math.round(Math.sqrt(size)));
+		this.shownValues = new int[size][size];
+		this.shownValid = new boolean[size][size];
+		this.shownUnitValid = new boolean[3 * size];
+		this.changedCells = new int[size * size];
+		this.cellChanged = new boolean[size * size];
+		this.changedUnits = new int[3 * size];
+		this.unitChanged = new boolean[3 * size];
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				shownValid[i][j] = true;
+		for (int unit = 0; unit < 3 * size; unit++)
+			shownUnitValid[unit] = true;
+	}
+
+	// Renderer of its own image of an empty board with the given number of lines
+	SudokuRenderer(int size) {
+		this(size, SudokuAux.cellResolution(size));
+	}
+
+	SudokuRenderer(int size, int cellResolution) {
+		this(emptyBoardImage(size, cellResolution), size, cellResolution);
+	}
+
+	static ColorImage emptyBoardImage(int size) {
+		return emptyBoardImage(size, SudokuAux.cellResolution(size));
+	}
+
+	// A copy of the template, made in one go
+	static ColorImage emptyBoardImage(int size, int cellResolution) {
+		ColorImage template = templates.computeIfAbsent((long) size << 32 | cellResolution,
+		    key -> drawEmptyBoard(size, cellResolution));
+
+		return new ColorImage(template.getPixels().clone(), template.getWidth(), template.getHeight());
+	}
+
+	private static ColorImage drawEmptyBoard(int size, int cellResolution) {
+		int resolution = cellResolution * size;
+		ColorImage img = new ColorImage(resolution, resolution, Color.SOLARIZED_BACKGROUND);
+
+		img.drawMargin();
+		img.drawGrid(size, size, (int) Math.round(Math.sqrt(size)));
+
+		return img;
+	}
+
+	void attach(SudokuBoard board) {
+		detach();
+
+		this.board = board;
+		this.dirty = true;
+		this.redrawAll = true;
+		board.addListener(this);
+	}
+
+	void detach() {
+		if (board != null)
+			board.removeListener(this);
+
+		board = null;
+	}
+
+	@Override
+	public void cellChanged(SudokuBoard board, int line, int column, int oldValue, int newValue) {
+		dirty = true;
+		if (redrawAll)
+			return;
+
+		int cell = geometry.cell(line, column);
+		if (!cellChanged[cell]) {
+			cellChanged[cell] = true;
+			changedCells[changedCellCount++] = cell;
+		}
+
+		unitChanged(board, line);
+		unitChanged(board, size + column);
+		unitChanged(board, 2 * size + geometry.sectorOf[cell]);
+	}
+
+	// Units whose validity changes have every cell redrawn at the next flush
+	private void unitChanged(SudokuBoard board, int unit) {
+		if (!unitChanged[unit] && validUnit(board, unit) != shownUnitValid[unit]) {
+			unitChanged[unit] = true;
+			changedUnits[changedUnitCount++] = unit;
+		}
+	}
+
+	private boolean validUnit(SudokuBoard board, int unit) {
+		if (unit < size)
+			return board.validateLine(unit);
+		if (unit < 2 * size)
+			return board.validateColumn(unit - size);
+
+		int first = geometry.units[unit][0];
+		return board.validateSector(geometry.lineOf[first], geometry.columnOf[first]);
+	}
+
+	ColorImage getImage() {
+		return img;
+	}
+
+	// The image, brought up to date with the attached board if it changed
+	ColorImage frame() {
+		if (board != null && dirty)
+			flush(board);
+
+		return img;
+	}
+
+	// Brings the image up to date with the board and returns how many cells had to
+	// be redrawn; only the changes are looked at when the board is the attached one
+	int flush(SudokuBoard board) {
+		long start = SudokuMetrics.start();
+		int redrawn = 0;
+		firstLine = firstColumn = size;
+		lastLine = lastColumn = -1;
+
+		if (redrawAll || board != this.board) {
+			for (int cell = 0; cell < size * size; cell++)
+				redrawn += update(board, cell);
+			for (int unit = 0; unit < 3 * size; unit++)
+				shownUnitValid[unit] = validUnit(board, unit);
+		} else {
+			for (int k = 0; k < changedUnitCount; k++) {
+				int unit = changedUnits[k];
+				for (int cell : geometry.units[unit])
+					redrawn += update(board, cell);
+				shownUnitValid[unit] = validUnit(board, unit);
+			}
+			for (int k = 0; k < changedCellCount; k++)
+				redrawn += update(board, changedCells[k]);
+		}
+
+		for (int k = 0; k < changedUnitCount; k++)
+			unitChanged[changedUnits[k]] = false;
+		for (int k = 0; k < changedCellCount; k++)
+			cellChanged[changedCells[k]] = false;
+		changedUnitCount = changedCellCount = 0;
+
+		// After drawing another board, the attached one is compared whole
+		redrawAll = board != this.board;
+		dirty = redrawAll && this.board != null;
+
+		SudokuMetrics.stop(SudokuMetrics.Operation.REPAINT, start);
+		return redrawn;
+	}
+
+	// Redraws the cell if it is not drawn as it is on the board
+	private int update(SudokuBoard board, int cell) {
+		int i = geometry.lineOf[cell];
+		int j = geometry.columnOf[cell];
+		int value = board.getValue(i, j);
+		boolean valid = board.validCell(i, j);
+
+		if (value == shownValues[i][j] && valid == shownValid[i][j])
+			return 0;
+
+		drawCell(i, j, value, valid);
+		return 1;
+	}
+
+	// Cells still as in the empty board (eg. the given values, on the first flush)
+	// only need their value drawn
+	private void drawCell(int line, int column, int value, boolean valid) {
+		Color c = valid ? Color.SOLARIZED_FONT : Color.SOLARIZED_ERROR;
+		if (shownValues[line][column] == 0 && shownValid[line][column])
+			SudokuAux.writeToBlankCell(img, line, column, value + "", c, cellResolution);
+		else
+			SudokuAux.writeToCellWithFontColor(img, line, column, value + "", c, cellResolution);
+
+		shownValues[line][column] = value;
+		shownValid[line][column] = valid;
+
+		firstLine = Math.min(firstLine, line);
+		firstColumn = Math.min(firstColumn, column);
+		lastLine = Math.max(lastLine, line);
+		lastColumn = Math.max(lastColumn, column);
+	}
+
+	// Part of the image that the last flush changed, in pixels: x, y, width and
+	// height (all 0 if nothing changed)
+	int[] lastRedrawnArea() {
+		if (lastLine < firstLine)
+			return new int[4];
+
+		return new int[] { firstColumn * cellResolution, firstLine * cellResolution,
+		    (lastColumn - firstColumn + 1) * cellResolution, (lastLine - firstLine + 1) * cellResolution };
+	}
+}
@@ -0,0 +1,227 @@
+package sudokiscte;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves games over a line protocol, on a local socket or in-process (handle).
+// Requests, one per line, and their replies:
+// NEW [proportion of blanks]         OK <game>
+// PLAY <game> <line> <column> <value> OK, INVALIDA (repeats a value) or FIM
+// RANDOM <game>                       OK, INVALIDA or FIM
+// UNDO <game> | REDO <game>           OK
+// RESET <game>                        OK
+// BOARD <game>                        OK <board in the one-line layout>
+// HINT <game>                         OK <line> <column> <value> <technique>, or
+//                                     OK - when there is no hint
+// CLOSE <game>                        OK
+// QUIT                                (closes the connection)
+// Failed requests are answered with ERRO <reason>. Each connection has a thread
+// of its own (a virtual thread, where the Java version has them); games are
+// played in the sessions of a SessionManager
+class SudokuServer implements Closeable {
+	static final double DEFAULT_BLANK_PROPORTION = 0.5;
+
+	// Games with no requests for this long are parked (see SessionManager)
+	static final long IDLE_MILLIS = 5 * 60 * 1000;
+
+	private final SessionManager sessions;
+	private final int[][] puzzle;
+	private final ExecutorService connections = newConnectionExecutor();
+	private ServerSocket serverSocket;
+
+	// New games are made from the given puzzle (usually a full board), blanked in
+	// the requested proportion; games larger than 9x9 may have several solutions
+	// (see SessionManager.create)
+	SudokuServer(SessionManager sessions, int[][] puzzle) {
+		this.sessions = sessions;
+		this.puzzle = puzzle;
+	}
+
+	// One thread per connection: virtual threads, from Java 21, or else platform
+	// threads, reused between connections
+	private static ExecutorService newConnectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	// Starts accepting connections on the local address, returning the port
+	// (useful when asked for port 0, any free port)
+	int start(int port) throws IOException {
+		serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		connections.execute(this::accept);
+
+		return serverSocket.getLocalPort();
+	}
+
+	private void accept() {
+		try {
+			while (!serverSocket.isClosed()) {
+				final Socket socket = serverSocket.accept();
+				connections.execute(() -> serve(socket));
+			}
+		} catch (SocketException e) {
+			// The server was closed
+		} catch (IOException e) {
+			System.out.println("Erro ao aceitar ligações: " + e.getMessage());
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket;
+		    BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+		    PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+			s.setTcpNoDelay(true);
+
+			for (String request; (request = in.readLine()) != null && !request.trim().equals("QUIT");) {
+				out.print(reply(handle(request)));
+				out.print('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The client went away
+		}
+	}
+
+	private static String reply(CompletableFuture<String> pending) {
+		try {
+			return pending.get();
+		} catch (ExecutionException e) {
+			return "ERRO " + e.getCause().getMessage();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "ERRO Pedido interrompido";
+		}
+	}
+
+	// Handles a request, replying when the game has run it
+	CompletableFuture<String> handle(String request) {
+		try {
+			String[] words = request.trim().split(" +");
+
+			switch (words[0]) {
+			case "NEW":
+				double proportion = words.length > 1 ? Double.parseDouble(words[1]) : DEFAULT_BLANK_PROPORTION;
+				return sessions.createAsync(puzzle, proportion).thenApply(session -> "OK " + session.getId());
+			case "PLAY":
+				GameSession game = session(words, 5);
+				final int line = Integer.parseInt(words[2]);
+				final int column = Integer.parseInt(words[3]);
+				final int value = Integer.parseInt(words[4]);
+				return game.submit(board -> {
+					if (line < 0 || line >= board.getSize() || column < 0 || column >= board.getSize()
+					    || !board.play(line, column, value))
+						throw new IllegalArgumentException("Jogada não permitida");
+					return outcome(board, line, column);
+				});
+			case "RANDOM":
+				return session(words, 2).submit(board -> {
+					if (!board.randomPlay())
+						throw new IllegalArgumentException("Não há jogadas possíveis");
+					int move = board.lastMove();
+					return outcome(board, MoveJournal.line(move), MoveJournal.column(move));
+				});
+			case "UNDO":
+				return session(words, 2).submit(board -> {
+					board.undo();
+					return "OK";
+				});
+			case "REDO":
+				return session(words, 2).submit(board -> {
+					board.redo();
+					return "OK";
+				});
+			case "RESET":
+				return session(words, 2).submit(board -> {
+					board.reset();
+					return "OK";
+				});
+			case "BOARD":
+				return session(words, 2).submit(board -> SudokuAux.appendOneLine(new StringBuilder("OK "), board.getBoard()).toString());
+			case "HINT":
+				return session(words, 2).hint().thenApply(hint -> hint == null ? "OK -"
+				    : "OK " + hint.line + " " + hint.column + " " + hint.value + " " + hint.technique);
+			case "CLOSE":
+				expectWords(words, 2);
+				return sessions.close(Long.parseLong(words[1])).thenApply(closed -> "OK");
+			default:
+				throw new IllegalArgumentException("Pedido desconhecido: " + words[0]);
+			}
+		} catch (IllegalArgumentException e) {
+			CompletableFuture<String> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	// Session of the game named in the request, which must have `count` words
+	private GameSession session(String[] words, int count) {
+		expectWords(words, count);
+		return sessions.get(Long.parseLong(words[1]));
+	}
+
+	private static void expectWords(String[] words, int count) {
+		if (words.length != count)
+			throw new IllegalArgumentException("O pedido " + words[0] + " deve ter " + (count - 1) + " argumentos");
+	}
+
+	private static String outcome(SudokuBoard board, int line, int column) {
+		if (board.isGameFinished())
+			return "FIM";
+
+		return board.validCell(line, column) ? "OK" : "INVALIDA";
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (serverSocket != null)
+			serverSocket.close();
+
+		connections.shutdownNow();
+	}
+
+	// Usage: SudokuServer <puzzle file> [port] [autosave directory] [archive file]
+	// With a directory, games are saved there as they are played, and the games
+	// saved there are played again; with an archive, closed games are kept in it
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println(
+			    "Utilização: SudokuServer <ficheiro do tabuleiro> [porta] [pasta de gravação] [arquivo de jogos]");
+			return;
+		}
+
+		// Metrics are off unless turned on, through JMX or the property
+		// sudokiscte.metrics
+		SudokuMetrics.registerMBean();
+
+		SessionManager sessions = args.length > 2
+		    ? new SessionManager(SessionManager.newExecutor(),
+		        new Autosave(Paths.get(args[2]),
+		            error -> System.out.println("Erro ao guardar jogos em " + args[2] + ": " + error.getMessage())),
+		        args.length > 3 ? GameArchive.open(args[3]) : null)
+		    : new SessionManager();
+		if (args.length > 2)
+			System.out.println(sessions.recover() + " jogos recuperados");
+		sessions.parkIdleSessions(IDLE_MILLIS);
+
+		SudokuServer server = new SudokuServer(sessions, PuzzleReader.readFirst(args[0]));
+		int port = server.start(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+		System.out.println("À espera de ligações na porta " + port);
+	}
+}
@@ -0,0 +1,47 @@
+package sudokiscte;
+
+// Common interface of the solvers. Boards are square int[][] with a sector size
+// of their own (9x9, 16x16, ...), where 0 stands for a blank position; they are
+// never changed by the solvers
+interface SudokuSolver {
+
+	// Receives each solution found; returning false stops the search
+	interface SolutionVisitor {
+		boolean visit(int[][] solution);
+	}
+
+	// Outcome of a search: the first solution found (null when there is none), how
+	// many solutions were found and how many search nodes were explored
+	class Result {
+		final int[][] solution;
+		final long solutions;
+		final long nodes;
+
+		Result(int[][] solution, long solutions, long nodes) {
+			this.solution = solution;
+			this.solutions = solutions;
+			this.nodes = nodes;
+		}
+
+		boolean solved() {
+			return solution != null;
+		}
+	}
+
+	// Searches for up to `limit` solutions, handing each to the visitor (if any)
+	Result search(int[][] board, long limit, SolutionVisitor visitor);
+
+	default int[][] solve(int[][] board) {
+		return search(board, 1, null).solution;
+	}
+
+	// Counting stops at the limit: a limit of 2 is enough to tell whether a puzzle
+	// has a unique solution
+	default long countSolutions(int[][] board, long limit) {
+		return search(board, limit, null).solutions;
+	}
+
+	default void forEachSolution(int[][] board, SolutionVisitor visitor) {
+		search(board, Long.MAX_VALUE, visitor);
+	}
+}
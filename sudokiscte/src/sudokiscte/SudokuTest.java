@@ -1,7 +1,14 @@
 package sudokiscte;
 
 public class SudokuTest {
-	public static void main() {
+	// With arguments, solves a collection of puzzles without images (see
+	// SudokuBatch.main)
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			SudokuBatch.main(args);
+			return;
+		}
+
 		Sudoku sudoku = new Sudoku("src/fixtures/sudoku1.sud", 0.02);
 		return;
 	}
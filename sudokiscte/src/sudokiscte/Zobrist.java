@@ -0,0 +1,53 @@
+package sudokiscte;
+
+import java.util.SplittableRandom;
+
+// Zobrist hashing of board states: a random 64-bit key for each value in each
+// position (value 0, a blank position, has key 0), the hash of a board being the
+// xor of the keys of its values. A change to a position changes the hash by two
+// xors, so hashes can be kept up to date as a game is played
+class Zobrist {
+	static final long SEED = 0x5D0C15C7EL;
+
+	private static final Zobrist[] cache = new Zobrist[BoardGeometry.MAX_SECTOR_SIZE + 1];
+
+	private final int size;
+	private final long[] keys;
+
+	// The keys depend only on the sector size, so hashes can be compared between
+	// boards (and between runs)
+	static synchronized Zobrist of(int sectorSize) {
+		BoardGeometry.of(sectorSize);
+		if (cache[sectorSize] == null)
+			cache[sectorSize] = new Zobrist(sectorSize);
+
+		return cache[sectorSize];
+	}
+
+	private Zobrist(int sectorSize) {
+		this.size = sectorSize * sectorSize;
+		this.keys = new long[size * size * (size + 1)];
+
+		SplittableRandom random = new SplittableRandom(SEED + sectorSize);
+		for (int k = 0; k < keys.length; k++)
+			keys[k] = k % (size + 1) == 0 ? 0 : random.nextLong();
+	}
+
+	long key(int cell, int value) {
+		return keys[cell * (size + 1) + value];
+	}
+
+	long hash(int[][] board) {
+		long hash = 0;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				hash ^= key(i * size + j, board[i][j]);
+
+		return hash;
+	}
+
+	// Hash after the position changes from one value to the other
+	long update(long hash, int cell, int oldValue, int newValue) {
+		return hash ^ key(cell, oldValue) ^ key(cell, newValue);
+	}
+}
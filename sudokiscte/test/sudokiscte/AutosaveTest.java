@@ -0,0 +1,103 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static sudokiscte.TestPuzzles.OTHER_PUZZLE;
+import static sudokiscte.TestPuzzles.PUZZLE;
+import static sudokiscte.TestPuzzles.assertSameGame;
+import static sudokiscte.TestPuzzles.play;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AutosaveTest {
+	private Path directory;
+	private Autosave autosave;
+	private final List<IOException> failures = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("sudokiscte-autosave");
+		autosave = new Autosave(directory, failures::add);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try {
+			autosave.close();
+		} catch (IOException e) {
+			// Failures are what some of the tests are about
+		}
+		File[] files = directory.toFile().listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		Files.deleteIfExists(directory);
+	}
+
+	@Test(timeout = 10000)
+	public void recoversMovesUndoneAndRedone() throws Exception {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 3);
+		autosave.attach(1, board);
+		play(board, 30, 1);
+		board.undo();
+		board.undo();
+		board.redo();
+		autosave.sync();
+
+		assertSameGame(board, autosave.recover(1));
+	}
+
+	@Test(timeout = 10000)
+	public void recoversALoadedGameWithNoMovesAfterIt() throws Exception {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 3);
+		autosave.attach(1, board);
+		play(board, 10, 1);
+
+		SudokuBoard loaded = new SudokuBoard(OTHER_PUZZLE, 0, 3);
+		play(loaded, 5, 2);
+		SavedGame.of(loaded).applyTo(board);
+		autosave.sync();
+
+		// Without blanking the recovered game again
+		assertSameGame(loaded, autosave.recover(1));
+	}
+
+	@Test(timeout = 10000)
+	public void savesAgainAfterAFailure() throws Exception {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 3);
+		autosave.attach(1, board);
+		play(board, 10, 1);
+		autosave.sync();
+
+		for (File file : directory.toFile().listFiles())
+			file.delete();
+		Files.delete(directory);
+		board.reset();
+		SavedGame.of(new SudokuBoard(OTHER_PUZZLE, 0, 3)).applyTo(board);
+		try {
+			autosave.sync();
+			fail("The snapshot was written to a directory that does not exist");
+		} catch (IOException e) {
+			// The game is saved whole at its next change
+			assertFalse(failures.isEmpty());
+			assertSame(failures.get(failures.size() - 1), autosave.lastFailure());
+		}
+
+		Files.createDirectories(directory);
+		play(board, 3, 2);
+		autosave.sync();
+		assertNull(autosave.lastFailure());
+		assertSameGame(board, autosave.recover(1));
+	}
+}
@@ -0,0 +1,136 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static sudokiscte.TestPuzzles.PUZZLE;
+import static sudokiscte.TestPuzzles.assertSameGame;
+import static sudokiscte.TestPuzzles.play;
+
+import org.junit.Test;
+
+public class BoardStoreTest {
+	// A board with the given number of moves made, and then some of them undone
+	private static SudokuBoard played(int moves, int undone) {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 3);
+		play(board, moves, moves);
+		for (int k = 0; k < undone; k++)
+			board.undo();
+
+		return board;
+	}
+
+	@Test
+	public void parkAndUnparkKeepBoardPositionAndHistory() {
+		BoardStore store = new BoardStore(3);
+		// No history, inline only, one block and several blocks
+		for (int moves : new int[] { 0, 10, 16, 50, 300 }) {
+			SudokuBoard board = played(moves, moves / 5);
+			int slot = store.park(moves, board);
+
+			BoardStore.View view = store.view().moveTo(slot);
+			assertEquals(moves, view.getId());
+			assertEquals(board.getHistoryPosition(), view.getHistoryPosition());
+			for (int k = 0; k < moves; k++)
+				assertEquals(board.getHistory()[k], view.getMove(k));
+
+			SudokuBoard unparked = store.unpark(slot);
+			assertSameGame(board, unparked);
+
+			// Undo and redo go on where they were
+			board.undo();
+			unparked.undo();
+			assertSameGame(board, unparked);
+			board.redo();
+			unparked.redo();
+			assertSameGame(board, unparked);
+		}
+
+		assertEquals(0, store.size());
+		assertEquals(0, store.blockCount());
+	}
+
+	@Test
+	public void freedSlotsAndBlocksAreReused() {
+		BoardStore store = new BoardStore(3);
+		SudokuBoard board = played(200, 0);
+
+		int first = store.park(1, board);
+		int blocks = store.blockCount();
+		store.park(2, board);
+		store.free(first);
+
+		assertEquals(first, store.park(3, board));
+		assertEquals(2, store.slotCount());
+		assertEquals(2 * blocks, store.blockCount());
+
+		// Overwriting a slot with a shorter history frees its blocks
+		store.write(first, 3, new SudokuBoard(PUZZLE, 0, 3));
+		assertEquals(blocks, store.blockCount());
+	}
+
+	@Test
+	public void randomPlaysOfSeededGamesAreReproducedAfterParking() {
+		// The same game, seeded the same, parked in two stores
+		SudokuBoard[] unparked = new SudokuBoard[2];
+		for (int k = 0; k < 2; k++) {
+			SudokuBoard board = new SudokuBoard(PUZZLE, 0, 5);
+			for (int moves = 0; moves < 10; moves++)
+				board.randomPlay();
+
+			BoardStore store = new BoardStore(3);
+			unparked[k] = store.unpark(store.park(1, board));
+		}
+
+		for (int moves = 0; moves < 20; moves++) {
+			unparked[0].randomPlay();
+			unparked[1].randomPlay();
+			assertEquals(unparked[0].lastMove(), unparked[1].lastMove());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void freeSlotsCannotBeLoaded() {
+		BoardStore store = new BoardStore(3);
+		int slot = store.park(1, played(5, 0));
+		store.free(slot);
+		store.load(slot);
+	}
+
+	private static SudokuBoard copy(SudokuBoard board) {
+		SudokuBoard copy = new SudokuBoard(board.getInitialSnapshot(), board.snapshot());
+		copy.restoreHistory(board.getHistory(), board.getHistoryPosition());
+		return copy;
+	}
+
+	@Test(timeout = 10000)
+	public void idleSessionsAreParkedAndComeBackOnTheNextCommand() throws Exception {
+		SessionManager sessions = new SessionManager();
+		try {
+			GameSession session = sessions.create(PUZZLE, 0.3);
+			for (int k = 0; k < 20; k++)
+				session.submit(SudokuBoard::randomPlay).get();
+			SudokuBoard before = session.submit(BoardStoreTest::copy).get();
+
+			Thread.sleep(5);
+			assertEquals(1, sessions.parkIdle(1));
+			while (!session.isParked())
+				Thread.sleep(1);
+			assertEquals(0, sessions.parkIdle(1));
+			assertEquals(1, sessions.store(3).size());
+
+			SudokuBoard unparked = session.submit(BoardStoreTest::copy).get();
+			assertSameGame(before, unparked);
+			assertFalse(session.isParked());
+			assertEquals(0, sessions.store(3).size());
+
+			// The history came back too
+			before.undo();
+			assertSameGame(before, session.submit(board -> {
+				board.undo();
+				return copy(board);
+			}).get());
+		} finally {
+			sessions.shutdown();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ColorImageTest {
+	private static ColorImage numbered(int width, int height) {
+		int[] pixels = new int[width * height];
+		for (int k = 0; k < pixels.length; k++)
+			pixels[k] = 0xFF000000 | k;
+		return new ColorImage(pixels, width, height);
+	}
+
+	@Test
+	public void copyRectCopiesOnlyTheRectangle() {
+		ColorImage src = numbered(20, 10);
+		ColorImage img = new ColorImage(30, 30, Color.WHITE);
+		img.copyRect(src, 3, 2, 10, 15, 6, 4);
+
+		for (int y = 0; y < 30; y++)
+			for (int x = 0; x < 30; x++) {
+				boolean inside = x >= 10 && x < 16 && y >= 15 && y < 19;
+				assertEquals(inside ? src.getRgb(x - 10 + 3, y - 15 + 2) : Color.WHITE.getArgb(), img.getRgb(x, y));
+			}
+	}
+
+	@Test
+	public void copyRectExceptSkipsTransparentPixels() {
+		int[] src = numbered(8, 8).getPixels().clone();
+		for (int k = 0; k < src.length; k += 3)
+			src[k] = 0;
+
+		// The 4x3 rectangle at (2, 1) of the source
+		ColorImage img = new ColorImage(10, 10, Color.WHITE);
+		img.copyRectExcept(src, 8 + 2, 8, 5, 6, 4, 3, 0);
+
+		for (int y = 0; y < 10; y++)
+			for (int x = 0; x < 10; x++) {
+				boolean inside = x >= 5 && x < 9 && y >= 6 && y < 9;
+				int value = inside ? src[(y - 6 + 1) * 8 + x - 5 + 2] : 0;
+				assertEquals(value != 0 ? value : Color.WHITE.getArgb(), img.getRgb(x, y));
+			}
+	}
+
+	@Test
+	public void textIsClippedToTheImage() {
+		// The same text, whole on a larger image and cut by the edges of a smaller one
+		ColorImage whole = new ColorImage(200, 100, Color.WHITE);
+		whole.drawText(50, 30, "1234567890", 40, Color.SOLARIZED_FONT);
+		ColorImage clipped = new ColorImage(80, 40, Color.WHITE);
+		clipped.drawText(50 - 70, 30 - 40, "1234567890", 40, Color.SOLARIZED_FONT);
+
+		for (int y = 0; y < 40; y++)
+			for (int x = 0; x < 80; x++)
+				assertEquals(whole.getRgb(x + 70, y + 40), clipped.getRgb(x, y));
+	}
+}
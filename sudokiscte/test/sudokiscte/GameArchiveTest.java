@@ -0,0 +1,83 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GameArchiveTest {
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("sudokiscte", ".archive");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(file.resolveSibling(file.getFileName() + GameArchive.INDEX_SUFFIX));
+	}
+
+	private static SudokuBoard played(int moves) {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, moves);
+		for (int k = 0; k < moves; k++)
+			board.randomPlay();
+		return board;
+	}
+
+	private static void assertSameGame(SudokuBoard expected, SavedGame actual) {
+		TestPuzzles.assertSameGame(expected, actual.toBoard());
+	}
+
+	@Test
+	public void anAppendInterruptedMidRecordIsDroppedOnOpen() throws IOException {
+		SudokuBoard[] boards = { played(3), played(10), played(20) };
+		try (GameArchive archive = GameArchive.open(file.toString())) {
+			for (SudokuBoard board : boards)
+				archive.append(SavedGame.of(board));
+		}
+
+		// The last record loses its end, as if the process stopped while writing it
+		try (FileChannel data = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			data.truncate(data.size() - 5);
+		}
+
+		try (GameArchive archive = GameArchive.open(file.toString())) {
+			assertEquals(2, archive.size());
+			assertSameGame(boards[0], archive.get(0));
+			assertSameGame(boards[1], archive.get(1));
+
+			// Appending goes on after the last whole record
+			assertEquals(2, archive.append(SavedGame.of(boards[2])));
+			assertSameGame(boards[2], archive.get(2));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void closedSessionsAreArchived() throws Exception {
+		try (GameArchive archive = GameArchive.open(file.toString())) {
+			SessionManager sessions = new SessionManager(SessionManager.newExecutor(), null, archive);
+			try {
+				GameSession session = sessions.create(PUZZLE, 0.3);
+				for (int k = 0; k < 5; k++)
+					session.submit(SudokuBoard::randomPlay).get();
+				SudokuBoard board = session.submit(SavedGame::of).get().toBoard();
+
+				sessions.close(session.getId()).get();
+				assertEquals(1, archive.size());
+				assertSameGame(board, archive.get(0));
+			} finally {
+				sessions.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class GlyphAtlasTest {
+	@Test
+	public void fullAtlasesEvictDownToTheirSize() {
+		GlyphAtlas atlas = new GlyphAtlas(8, 2);
+		for (char c = '0'; c <= '9'; c++)
+			for (int size = 10; size < 14; size++)
+				atlas.glyph(c, size, Color.SOLARIZED_FONT);
+
+		assertTrue(atlas.size() <= 8);
+
+		// The glyph just rasterized is never the one evicted
+		GlyphAtlas.Glyph glyph = atlas.glyph('A', 20, Color.SOLARIZED_FONT);
+		assertSame(glyph, atlas.glyph('A', 20, Color.SOLARIZED_FONT));
+	}
+
+	@Test(timeout = 30000)
+	public void glyphsDrawnOnManyThreadsAreTheSameAsOnOne() throws Exception {
+		GlyphAtlas reference = new GlyphAtlas(GlyphAtlas.MAX_GLYPHS, GlyphAtlas.MAX_FACES);
+		final GlyphAtlas shared = new GlyphAtlas(GlyphAtlas.MAX_GLYPHS, GlyphAtlas.MAX_FACES);
+
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<GlyphAtlas.Glyph>>> drawn = new ArrayList<>();
+			for (int t = 0; t < 8; t++)
+				drawn.add(threads.submit(() -> {
+					List<GlyphAtlas.Glyph> glyphs = new ArrayList<>();
+					for (int size = 12; size < 40; size += 3)
+						for (char c = '0'; c <= '9'; c++)
+							glyphs.add(shared.glyph(c, size, Color.SOLARIZED_ERROR));
+					return glyphs;
+				}));
+
+			for (Future<List<GlyphAtlas.Glyph>> glyphs : drawn) {
+				int k = 0;
+				for (int size = 12; size < 40; size += 3)
+					for (char c = '0'; c <= '9'; c++) {
+						GlyphAtlas.Glyph expected = reference.glyph(c, size, Color.SOLARIZED_ERROR);
+						GlyphAtlas.Glyph actual = glyphs.get().get(k++);
+						assertEquals(expected.advance, actual.advance);
+						assertEquals(expected.offsetX, actual.offsetX);
+						assertEquals(expected.offsetY, actual.offsetY);
+						assertArrayEquals(expected.pixels, actual.pixels);
+
+						// Every thread ends up with the glyph stored first
+						assertSame(shared.glyph(c, size, Color.SOLARIZED_ERROR), actual);
+					}
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageUtilTest {
+	// Taller than a band, and not a multiple of it
+	private static final int WIDTH = 37;
+	private static final int HEIGHT = 2 * ImageUtil.BAND_LINES + 45;
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("sudokiscte-images");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path file : Files.newDirectoryStream(directory))
+			Files.delete(file);
+		Files.delete(directory);
+	}
+
+	// Opaque colors, from a few, so that they survive the palette of a GIF
+	private static int[][] pixels() {
+		int[] colors = { 0xFF000000, 0xFFFFFFFF, 0xFF268BD2, 0xFFDC322F, 0xFF859900 };
+		Random random = new Random(1);
+		int[][] data = new int[HEIGHT][WIDTH];
+		for (int y = 0; y < HEIGHT; y++)
+			for (int x = 0; x < WIDTH; x++)
+				data[y][x] = colors[random.nextInt(colors.length)];
+
+		return data;
+	}
+
+	@Test
+	public void matricesWrittenInBandsComeBackTheSame() {
+		int[][] data = pixels();
+		for (String format : new String[] { "png", "gif" }) {
+			String path = directory.resolve("image." + format).toString();
+			ImageUtil.writeImage(data, path, format);
+
+			int[][] read = ImageUtil.readColorImage(path);
+			assertEquals(format, HEIGHT, read.length);
+			for (int y = 0; y < HEIGHT; y++)
+				assertArrayEquals(format + ", linha " + y, data[y], read[y]);
+		}
+	}
+
+	@Test
+	public void binaryImagesAreReadInBands() {
+		int[][] data = pixels();
+		String path = directory.resolve("image.png").toString();
+		ImageUtil.writeImage(data, path, "png");
+
+		boolean[][] binary = ImageUtil.readBinaryImage(path);
+		for (int y = 0; y < HEIGHT; y++)
+			for (int x = 0; x < WIDTH; x++) {
+				int v = data[y][x];
+				assertEquals(ImageUtil.luminance((v >> 16) & 0xFF, (v >> 8) & 0xFF, v & 0xFF) >= 128, binary[y][x]);
+			}
+	}
+}
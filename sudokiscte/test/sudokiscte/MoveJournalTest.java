@@ -0,0 +1,95 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MoveJournalTest {
+	// A blank position of the puzzle
+	private static int[] blankPosition(SudokuBoard board) {
+		for (int i = 0; i < 9; i++)
+			for (int j = 0; j < 9; j++)
+				if (board.getInitialValue(i, j) == 0)
+					return new int[] { i, j };
+		throw new AssertionError("O tabuleiro não tem posições em branco");
+	}
+
+	@Test
+	public void undoBringsBackTheValueBeforeTheMove() {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 1);
+		int[] position = blankPosition(board);
+		board.play(position[0], position[1], 3);
+		board.play(position[0], position[1], 7);
+
+		board.undo();
+		assertEquals(3, board.getValue(position[0], position[1]));
+		board.undo();
+		assertEquals(0, board.getValue(position[0], position[1]));
+		board.redo();
+		assertEquals(3, board.getValue(position[0], position[1]));
+	}
+
+	@Test
+	public void aNewMoveDropsTheMovesThatCouldBeRedone() {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 1);
+		TestPuzzles.play(board, 10, 1);
+		board.undo();
+		board.undo();
+		assertEquals(10, board.getHistory().length);
+
+		int[] position = blankPosition(board);
+		board.play(position[0], position[1], 4);
+		assertEquals(9, board.getHistory().length);
+		assertEquals(9, board.getHistoryPosition());
+		assertFalse(board.redo());
+	}
+
+	@Test
+	public void seekingIsReplayingThatManyMoves() {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 1);
+		TestPuzzles.play(board, 40, 2);
+		int[] history = board.getHistory();
+
+		Random random = new Random(3);
+		for (int k = 0; k < 30; k++) {
+			int position = random.nextInt(history.length + 1);
+			board.seek(position);
+
+			SudokuBoard replayed = new SudokuBoard(PUZZLE, 0, 1);
+			for (int move : Arrays.copyOf(history, position))
+				replayed.play(MoveJournal.line(move), MoveJournal.column(move), MoveJournal.newValue(move));
+
+			assertEquals(replayed.snapshot(), board.snapshot());
+			assertEquals(replayed.getHash(), board.getHash());
+			assertEquals(position, board.getHistoryPosition());
+		}
+	}
+
+	@Test
+	public void movesOfA25x25BoardArePackedWhole() {
+		int size = 25;
+		for (int line = 0; line < size; line++)
+			for (int column = 0; column < size; column++)
+				for (int oldValue = 0; oldValue <= size; oldValue += 5)
+					for (int newValue = 0; newValue <= size; newValue++) {
+						int move = MoveJournal.pack(line, column, oldValue, newValue);
+						assertEquals(line, MoveJournal.line(move));
+						assertEquals(column, MoveJournal.column(move));
+						assertEquals(oldValue, MoveJournal.oldValue(move));
+						assertEquals(newValue, MoveJournal.newValue(move));
+					}
+
+		// And back through the journal of a board
+		SudokuBoard board = new SudokuBoard(new int[size][size], 0, 1);
+		board.play(24, 24, 25);
+		board.play(24, 24, 17);
+		assertEquals(MoveJournal.pack(24, 24, 25, 17), board.lastMove());
+		board.undo();
+		assertEquals(25, board.getValue(24, 24));
+	}
+}
@@ -0,0 +1,100 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PuzzleIndexTest {
+	// An equivalent puzzle: values relabeled, bands, lines in a band, stacks and
+	// columns in a stack reordered, and transposed
+	private static int[][] equivalent(int[][] puzzle, Random random) {
+		int size = puzzle.length;
+		int sectorSize = (int) Math.round(Math.sqrt(size));
+		int[] labels = shuffled(size, random);
+		int[] lines = groupedOrder(sectorSize, random);
+		int[] columns = groupedOrder(sectorSize, random);
+		boolean transpose = random.nextBoolean();
+
+		int[][] result = new int[size][size];
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++) {
+				int value = puzzle[lines[i]][columns[j]];
+				int relabeled = value == 0 ? 0 : labels[value - 1] + 1;
+				if (transpose)
+					result[j][i] = relabeled;
+				else
+					result[i][j] = relabeled;
+			}
+
+		return result;
+	}
+
+	private static int[] shuffled(int n, Random random) {
+		int[] order = new int[n];
+		for (int k = 0; k < n; k++)
+			order[k] = k;
+		for (int k = n - 1; k > 0; k--) {
+			int other = random.nextInt(k + 1);
+			int swap = order[k];
+			order[k] = order[other];
+			order[other] = swap;
+		}
+		return order;
+	}
+
+	// Lines (or columns) of the same band stay together
+	private static int[] groupedOrder(int sectorSize, Random random) {
+		int[] bands = shuffled(sectorSize, random);
+		int[] order = new int[sectorSize * sectorSize];
+		for (int b = 0; b < sectorSize; b++) {
+			int[] within = shuffled(sectorSize, random);
+			for (int k = 0; k < sectorSize; k++)
+				order[b * sectorSize + k] = bands[b] * sectorSize + within[k];
+		}
+		return order;
+	}
+
+	@Test
+	public void equivalentPuzzlesHaveTheSameKey() {
+		Random random = new Random(1);
+		for (int seed = 0; seed < 10; seed++) {
+			int[][] puzzle = new SudokuGenerator(3, new Random(seed)).generate(50).clues;
+			BoardSnapshot key = PuzzleIndex.key(puzzle);
+			for (int k = 0; k < 5; k++)
+				assertEquals(key, PuzzleIndex.key(equivalent(puzzle, random)));
+
+			int[][] other = new SudokuGenerator(3, new Random(seed + 100)).generate(50).clues;
+			assertNotEquals(key, PuzzleIndex.key(other));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void boardsLargerThan9x9CannotBeIndexed() {
+		PuzzleIndex.key(new int[16][16]);
+	}
+
+	@Test
+	public void batchesReportTheFirstEquivalentPuzzle() throws Exception {
+		Random random = new Random(2);
+		int[][] first = new SudokuGenerator(3, new Random(1)).generate(50).clues;
+		int[][] second = new SudokuGenerator(3, new Random(2)).generate(50).clues;
+		StringWriter output = new StringWriter();
+
+		SudokuBatch batch = new SudokuBatch(4, 4, new BitmaskSolver(), true);
+		batch.run(Arrays.asList(first, second, equivalent(second, random), equivalent(first, random)).iterator(),
+		    output);
+
+		String[] lines = output.toString().split("\n");
+		assertEquals(5, lines[0].split(" ").length);
+		assertEquals(5, lines[1].split(" ").length);
+		assertTrue(lines[2].endsWith(" 2"));
+		assertTrue(lines[3].endsWith(" 1"));
+		assertTrue(batch.summary().contains("2 equivalentes"));
+	}
+}
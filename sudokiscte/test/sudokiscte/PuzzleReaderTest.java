@@ -0,0 +1,161 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static sudokiscte.TestPuzzles.OTHER_PUZZLE;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PuzzleReaderTest {
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("sudokiscte", ".txt");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	// The one-line layout, with '.' or '0' for blank positions
+	private static String oneLine(int[][] puzzle, char blank) {
+		return SudokuAux.appendOneLine(new StringBuilder(), puzzle).toString().replace('0', blank);
+	}
+
+	// The .sud layout, with '.' or '0' for blank positions
+	private static String grid(int[][] puzzle, String blank, String lineEnd) {
+		StringBuilder text = new StringBuilder();
+		for (int[] line : puzzle) {
+			for (int j = 0; j < line.length; j++)
+				text.append(j == 0 ? "" : " ").append(line[j] == 0 ? blank : "" + line[j]);
+			text.append(lineEnd);
+		}
+		return text.toString();
+	}
+
+	private List<int[][]> readFile(String text) throws IOException {
+		Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+		try (Stream<int[][]> puzzles = PuzzleReader.read(file.toString())) {
+			return puzzles.collect(Collectors.toList());
+		}
+	}
+
+	private static List<int[][]> readStream(String text) {
+		try (Stream<int[][]> puzzles = PuzzleReader
+		    .read(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)))) {
+			return puzzles.collect(Collectors.toList());
+		}
+	}
+
+	private static void assertSamePuzzles(List<int[][]> expected, List<int[][]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int k = 0; k < expected.size(); k++)
+			assertArrayEquals("Tabuleiro " + k, expected.get(k), actual.get(k));
+	}
+
+	@Test
+	public void readsBothLayoutsAndLineEnds() throws IOException {
+		int[][] small = new SudokuGenerator(2, new Random(1)).generate(8).clues;
+		int[][] large = new SudokuGenerator(4, new Random(1)).generate(100).clues;
+
+		String text = oneLine(PUZZLE, '.') + "\n" + oneLine(OTHER_PUZZLE, '0') + "\r\n" + "\r\n"
+		    + grid(PUZZLE, "0", "\r\n") + "\r\n" + grid(OTHER_PUZZLE, ".", "\n") + "\n" + oneLine(large, '.') + "\n"
+		    + grid(small, ".", "\r\n");
+
+		List<int[][]> expected = new ArrayList<>();
+		for (int[][] puzzle : new int[][][] { PUZZLE, OTHER_PUZZLE, PUZZLE, OTHER_PUZZLE, large, small })
+			expected.add(puzzle);
+
+		assertSamePuzzles(expected, readFile(text));
+		assertSamePuzzles(expected, readStream(text));
+	}
+
+	@Test
+	public void theRecordsBeforeATruncatedOneAreRead() throws IOException {
+		String grid = grid(OTHER_PUZZLE, ".", "\n");
+		for (String text : new String[] { oneLine(PUZZLE, '.') + "\n" + grid.substring(0, grid.length() / 2),
+		    oneLine(PUZZLE, '.') + "\n" + oneLine(OTHER_PUZZLE, '.').substring(0, 70) }) {
+			Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+			try (Stream<int[][]> puzzles = PuzzleReader.read(file.toString())) {
+				Iterator<int[][]> read = puzzles.iterator();
+				assertArrayEquals(PUZZLE, read.next());
+				try {
+					read.next();
+					fail("Um tabuleiro incompleto foi lido");
+				} catch (IllegalArgumentException e) {
+					// The last record is incomplete
+				}
+			}
+		}
+	}
+
+	@Test
+	public void boardsOfSizesThatCannotBePlayedAreRejected() {
+		// 5 values in a line, 80 characters in a line, and a value larger than the board
+		for (String text : new String[] { "1 2 3 4 5\n", oneLine(PUZZLE, '.').substring(1) + "\n",
+		    grid(PUZZLE, ".", "\n").replaceFirst("\\.", "10") }) {
+			try {
+				readStream(text);
+				fail("Foi lido: " + text);
+			} catch (IllegalArgumentException e) {
+				// As expected
+			}
+		}
+	}
+
+	@Test
+	public void filesSplitIntoPartsGiveTheSamePuzzlesInOrder() throws IOException {
+		// Several times MIN_SPLIT_BYTES, in both layouts
+		for (boolean oneLine : new boolean[] { true, false }) {
+			List<int[][]> expected = new ArrayList<>();
+			StringBuilder text = new StringBuilder();
+			Random random = new Random(1);
+			while (text.length() < 8 * PuzzleReader.MIN_SPLIT_BYTES) {
+				int[][] puzzle = random.nextBoolean() ? PUZZLE : OTHER_PUZZLE;
+				expected.add(puzzle);
+				text.append(oneLine ? oneLine(puzzle, '.') + "\r\n" : grid(puzzle, "0", "\r\n") + "\r\n");
+			}
+			Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+
+			// Split by hand, the first part first
+			try (Stream<int[][]> puzzles = PuzzleReader.read(file.toString())) {
+				Spliterator<int[][]> rest = puzzles.spliterator();
+				Spliterator<int[][]> first = rest.trySplit();
+				assertNotNull(first);
+				Spliterator<int[][]> second = first.trySplit();
+				assertNotNull(second);
+
+				List<int[][]> read = new ArrayList<>();
+				second.forEachRemaining(read::add);
+				first.forEachRemaining(read::add);
+				rest.forEachRemaining(read::add);
+				assertSamePuzzles(expected, read);
+			}
+
+			// And by a parallel stream
+			try (Stream<int[][]> puzzles = PuzzleReader.read(file.toString())) {
+				assertSamePuzzles(expected, puzzles.parallel().collect(Collectors.toList()));
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+public class ReplayExporterTest {
+	// Frames of the replay: several runs, whatever the number of processors
+	private static final int MOVES = 3 * ReplayExporter.MIN_FRAMES_PER_RUN + 5;
+
+	private ExecutorService executor;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		executor = Executors.newFixedThreadPool(4);
+		file = Files.createTempFile("sudokiscte", ".gif");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		executor.shutdownNow();
+		Files.deleteIfExists(file);
+	}
+
+	// A game with moves undone at the end, which the replay leaves out
+	private static SudokuBoard game() {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 1);
+		TestPuzzles.play(board, MOVES + 3, 1);
+		for (int k = 0; k < 3; k++)
+			board.undo();
+		return board;
+	}
+
+	// The board after the first `frame` moves of the game
+	private static SudokuBoard boardAt(SudokuBoard game, int frame) {
+		SudokuBoard board = new SudokuBoard(game.getInitialSnapshot(), game.snapshot());
+		board.restoreHistory(game.getHistory(), game.getHistoryPosition());
+		board.seek(frame);
+		return board;
+	}
+
+	// The image of the board drawn whole by a renderer of its own
+	private static int[] drawnWhole(SudokuBoard board, int cellResolution) {
+		SudokuRenderer renderer = new SudokuRenderer(board.getSize(), cellResolution);
+		renderer.flush(board);
+		return renderer.getImage().getPixels();
+	}
+
+	@Test(timeout = 60000)
+	public void spriteSheetTilesAreTheBoardsOfEachMove() {
+		SudokuBoard game = game();
+		int cellResolution = 12;
+		int side = 9 * cellResolution;
+		int columns = 10;
+
+		ColorImage sheet = new ReplayExporter(executor).spriteSheet(game, columns, cellResolution);
+		assertEquals(columns * side, sheet.getWidth());
+		assertEquals((MOVES + 1 + columns - 1) / columns * side, sheet.getHeight());
+
+		for (int frame = 0; frame <= MOVES; frame++) {
+			int[] expected = drawnWhole(boardAt(game, frame), cellResolution);
+			int x = frame % columns * side;
+			int y = frame / columns * side;
+			for (int line = 0; line < side; line++) {
+				int start = (y + line) * sheet.getWidth() + x;
+				assertArrayEquals("Imagem " + frame + ", linha " + line,
+				    Arrays.copyOfRange(expected, line * side, (line + 1) * side),
+				    Arrays.copyOfRange(sheet.getPixels(), start, start + side));
+			}
+		}
+	}
+
+	private static int attribute(IIOMetadataNode descriptor, String name) {
+		return Integer.parseInt(descriptor.getAttribute(name));
+	}
+
+	@Test(timeout = 60000)
+	public void gifFramesDrawnOverEachOtherAreTheBoardsOfEachMove() throws IOException {
+		SudokuBoard game = game();
+		new ReplayExporter(executor).writeGif(game, file.toString());
+		int cellResolution = SudokuAux.cellResolution(9);
+
+		ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+		try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+			reader.setInput(in);
+			assertEquals(MOVES + 1, reader.getNumImages(true));
+
+			// Each frame is the part that changed, drawn where the descriptor says
+			int[] canvas = null;
+			int width = 0;
+			for (int frame = 0; frame <= MOVES; frame++) {
+				BufferedImage delta = reader.read(frame);
+				IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(frame)
+				    .getAsTree("javax_imageio_gif_image_1.0");
+				IIOMetadataNode descriptor = null;
+				for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling())
+					if (node.getNodeName().equals("ImageDescriptor"))
+						descriptor = (IIOMetadataNode) node;
+
+				if (canvas == null) {
+					width = delta.getWidth();
+					canvas = new int[width * delta.getHeight()];
+				}
+				int left = attribute(descriptor, "imageLeftPosition");
+				int top = attribute(descriptor, "imageTopPosition");
+				for (int y = 0; y < delta.getHeight(); y++)
+					for (int x = 0; x < delta.getWidth(); x++)
+						canvas[(top + y) * width + left + x] = delta.getRGB(x, y);
+
+				assertArrayEquals("Imagem " + frame, drawnWhole(boardAt(game, frame), cellResolution), canvas);
+			}
+		} finally {
+			reader.dispose();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static sudokiscte.TestPuzzles.OTHER_PUZZLE;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SudokuBatchTest {
+	private static int[][] copy(int[][] puzzle) {
+		int[][] copy = new int[puzzle.length][];
+		for (int i = 0; i < puzzle.length; i++)
+			copy[i] = puzzle[i].clone();
+		return copy;
+	}
+
+	// Puzzles with 1, 2 (several) and 0 solutions, in turn
+	private static List<int[][]> puzzles(int count) {
+		int[][] several = copy(PUZZLE);
+		for (int j = 0; j < 9; j++)
+			several[0][j] = several[1][j] = several[2][j] = 0;
+		int[][] none = copy(OTHER_PUZZLE);
+		none[0][0] = none[0][1] = 1;
+
+		List<int[][]> puzzles = new ArrayList<>();
+		for (int k = 0; k < count; k++)
+			puzzles.add(k % 3 == 0 ? PUZZLE : k % 3 == 1 ? several : none);
+		return puzzles;
+	}
+
+	private static void assertLines(String output, int count) {
+		String[] lines = output.isEmpty() ? new String[0] : output.split("\n");
+		assertEquals(count, lines.length);
+		for (int k = 0; k < count; k++) {
+			String[] fields = lines[k].split(" ");
+			assertEquals(Integer.toString(k + 1), fields[0]);
+			assertEquals(Integer.toString(new int[] { 1, 2, 0 }[k % 3]), fields[1]);
+			assertEquals(k % 3 == 2, fields[4].equals("-"));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void resultsAreWrittenInTheOrderOfThePuzzles() throws Exception {
+		// Fewer places in the queue than workers: reading waits for the writer
+		SudokuBatch batch = new SudokuBatch(4, 2, new BitmaskSolver());
+		StringWriter output = new StringWriter();
+
+		assertEquals(200, batch.run(puzzles(200).iterator(), output));
+		assertLines(output.toString(), 200);
+		assertEquals("200 tabuleiros: 67 com solução única, 67 com várias soluções, 66 sem solução",
+		    batch.summary());
+	}
+
+	@Test(timeout = 30000)
+	public void theResultsBeforeAnInvalidPuzzleAreWritten() throws Exception {
+		final Iterator<int[][]> puzzles = puzzles(50).iterator();
+		Iterator<int[][]> input = new Iterator<int[][]>() {
+			private int read = 0;
+
+			@Override
+			public boolean hasNext() {
+				return puzzles.hasNext();
+			}
+
+			@Override
+			public int[][] next() {
+				if (++read == 31)
+					throw new IllegalArgumentException("Tabuleiro inválido");
+				return puzzles.next();
+			}
+		};
+
+		SudokuBatch batch = new SudokuBatch(4, 2, new BitmaskSolver());
+		StringWriter output = new StringWriter();
+		try {
+			batch.run(input, output);
+			fail("O tabuleiro inválido não foi assinalado");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Tabuleiro inválido", e.getMessage());
+		}
+		assertLines(output.toString(), 30);
+	}
+}
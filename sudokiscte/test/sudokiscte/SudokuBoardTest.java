@@ -0,0 +1,143 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+// The masks and conflict counters of a board against scans of the whole board
+public class SudokuBoardTest {
+	// Repeated occurrences of the values of a unit: size values, read by index
+	private interface Unit {
+		int value(int index);
+	}
+
+	private static int repeated(int size, Unit unit) {
+		int[] count = new int[size + 1];
+		int repeated = 0;
+		for (int k = 0; k < size; k++) {
+			int value = unit.value(k);
+			if (value != 0 && ++count[value] > 1)
+				repeated++;
+		}
+		return repeated;
+	}
+
+	private static int lineConflicts(SudokuBoard board, int line) {
+		return repeated(board.getSize(), k -> board.getValue(line, k));
+	}
+
+	private static int columnConflicts(SudokuBoard board, int column) {
+		return repeated(board.getSize(), k -> board.getValue(k, column));
+	}
+
+	private static int sectorConflicts(SudokuBoard board, int sector) {
+		int sectorSize = board.getSectorSize();
+		int top = sector / sectorSize * sectorSize;
+		int left = sector % sectorSize * sectorSize;
+		return repeated(board.getSize(), k -> board.getValue(top + k / sectorSize, left + k % sectorSize));
+	}
+
+	private static void assertAgreesWithAScan(String message, SudokuBoard board) {
+		int size = board.getSize();
+		int conflicts = 0;
+		boolean filled = true;
+		for (int k = 0; k < size; k++) {
+			conflicts += lineConflicts(board, k) + columnConflicts(board, k) + sectorConflicts(board, k);
+			assertEquals(message, lineConflicts(board, k) == 0, board.validateLine(k));
+			assertEquals(message, columnConflicts(board, k) == 0, board.validateColumn(k));
+		}
+		assertEquals(message, conflicts, board.getConflictCount());
+
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++) {
+				int sector = board.sectorOf(i, j);
+				assertEquals(message, sectorConflicts(board, sector) == 0, board.validateSector(i, j));
+				assertEquals(message,
+				    lineConflicts(board, i) + columnConflicts(board, j) + sectorConflicts(board, sector) == 0,
+				    board.validCell(i, j));
+				filled &= board.getValue(i, j) != 0;
+			}
+		assertEquals(message, filled && conflicts == 0, board.isGameFinished());
+	}
+
+	@Test
+	public void duplicatesAreCountedInTheirLineColumnAndSector() {
+		SudokuBoard board = new SudokuBoard(new int[9][9], 0, 1);
+
+		board.play(0, 0, 5);
+		board.play(0, 4, 5);
+		assertEquals(1, board.getConflictCount());
+		assertFalse(board.validateLine(0));
+		assertTrue(board.validCell(1, 0));
+
+		// Third in the line, second in the sector
+		board.play(0, 1, 5);
+		assertEquals(3, board.getConflictCount());
+		assertFalse(board.validCell(2, 2));
+
+		// Second in the column
+		board.play(6, 0, 5);
+		assertEquals(4, board.getConflictCount());
+		assertFalse(board.validateColumn(0));
+
+		// Overwriting a duplicate takes its conflicts away
+		board.play(0, 1, 6);
+		assertEquals(2, board.getConflictCount());
+		assertTrue(board.validCell(2, 2));
+		board.play(6, 0, 0);
+		assertEquals(1, board.getConflictCount());
+		assertTrue(board.validateColumn(0));
+		board.undo();
+		assertEquals(2, board.getConflictCount());
+
+		assertAgreesWithAScan("", board);
+	}
+
+	@Test
+	public void validityAgreesWithAScanOfTheBoard() {
+		for (int sectorSize = 2; sectorSize <= 3; sectorSize++) {
+			int size = sectorSize * sectorSize;
+			int[][] puzzle = new SudokuGenerator(sectorSize, new Random(size)).generate(size * size / 2).clues;
+			SudokuBoard board = new SudokuBoard(puzzle, 0, 1);
+			Random random = new Random(sectorSize);
+
+			// Any value, blanks and repeated ones included
+			for (int k = 0; k < 300; k++) {
+				if (random.nextInt(5) == 0)
+					board.undo();
+				else
+					board.play(random.nextInt(size), random.nextInt(size), random.nextInt(size + 1));
+				assertAgreesWithAScan("Jogada " + k, board);
+			}
+
+			// Then the solution, position by position, until the game is finished
+			int[][] solution = new BitmaskSolver().solve(puzzle);
+			for (int i = 0; i < size; i++)
+				for (int j = 0; j < size; j++) {
+					board.play(i, j, solution[i][j]);
+					assertAgreesWithAScan("Solução em " + i + " " + j, board);
+				}
+			assertTrue(board.isGameFinished());
+		}
+	}
+
+	@Test
+	public void resetClearsTheCounters() {
+		SudokuBoard board = new SudokuBoard(PUZZLE, 0, 1);
+		SudokuBoard fresh = new SudokuBoard(PUZZLE, 0, 1);
+		TestPuzzles.play(board, 100, 1);
+		assertTrue(board.getConflictCount() > 0);
+
+		board.reset();
+		assertEquals(0, board.getConflictCount());
+		assertAgreesWithAScan("", board);
+		for (int i = 0; i < 9; i++)
+			for (int j = 0; j < 9; j++)
+				assertEquals(fresh.candidates(i, j), board.candidates(i, j));
+	}
+}
@@ -0,0 +1,97 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class SudokuGeneratorTest {
+	private static int blanks(int[][] board) {
+		int blanks = 0;
+		for (int[] line : board)
+			for (int value : line)
+				if (value == 0)
+					blanks++;
+
+		return blanks;
+	}
+
+	@Test
+	public void blankingA9x9BoardKeepsItsSolutionUnique() {
+		SudokuGenerator generator = new SudokuGenerator(3, new Random(1));
+		int[][] puzzle = generator.blank(generator.randomGrid(), 0.5);
+
+		assertEquals(40, blanks(puzzle));
+		assertEquals(1, new BitmaskSolver().countSolutions(puzzle, 2));
+	}
+
+	@Test(timeout = 10000)
+	public void largerGamesAreBlankedAtRandom() {
+		for (int sectorSize = 4; sectorSize <= 5; sectorSize++) {
+			int size = sectorSize * sectorSize;
+			SudokuGenerator generator = new SudokuGenerator(sectorSize, new Random(1));
+
+			assertEquals((int) (0.7 * size * size), blanks(generator.blankUnchecked(generator.randomGrid(), 0.7)));
+			SudokuBoard board = new SudokuBoard(generator.randomGrid(), 0.7, 1);
+			assertEquals((int) (0.7 * size * size), blanks(board.getInitialSnapshot().toBoard()));
+		}
+	}
+
+	private static String key(int[][] puzzle) {
+		return SudokuAux.appendOneLine(new StringBuilder(), puzzle).toString();
+	}
+
+	@Test(timeout = 30000)
+	public void generatesTheRequestedNumberOfDifferentUniquePuzzlesInParallel() throws Exception {
+		BlockingQueue<SudokuGenerator.Puzzle> queue = new ArrayBlockingQueue<>(4);
+		ExecutorService workers = SudokuGenerator.generateInto(queue, 60, 4, 1, 3, 50);
+
+		// The queue is smaller than the puzzles asked for: workers wait for it
+		List<SudokuGenerator.Puzzle> puzzles = new ArrayList<>();
+		while (!workers.isTerminated() || !queue.isEmpty()) {
+			SudokuGenerator.Puzzle puzzle = queue.poll(10, TimeUnit.MILLISECONDS);
+			if (puzzle != null)
+				puzzles.add(puzzle);
+		}
+		assertTrue(workers.awaitTermination(1, TimeUnit.SECONDS));
+
+		assertEquals(60, puzzles.size());
+		Set<String> different = new HashSet<>();
+		for (SudokuGenerator.Puzzle puzzle : puzzles) {
+			assertEquals(1, new BitmaskSolver().countSolutions(puzzle.clues, 2));
+			assertEquals(key(puzzle.solution), key(new BitmaskSolver().solve(puzzle.clues)));
+			different.add(key(puzzle.clues));
+		}
+		assertEquals(60, different.size());
+	}
+
+	@Test(timeout = 30000)
+	public void batchesWriteGeneratedPuzzlesThatCanBeReadBack() throws Exception {
+		StringWriter output = new StringWriter();
+		assertEquals(25, SudokuBatch.generate(25, 3, 3, 45, 2, output));
+
+		List<int[][]> read;
+		try (Stream<int[][]> puzzles = PuzzleReader
+		    .read(new ByteArrayInputStream(output.toString().getBytes(StandardCharsets.US_ASCII)))) {
+			read = puzzles.collect(Collectors.toList());
+		}
+		assertEquals(25, read.size());
+		for (int[][] puzzle : read)
+			assertEquals(1, new BitmaskSolver().countSolutions(puzzle, 2));
+	}
+}
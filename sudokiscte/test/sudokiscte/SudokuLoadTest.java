@@ -0,0 +1,75 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static sudokiscte.TestPuzzles.OTHER_PUZZLE;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+public class SudokuLoadTest {
+	// A saved game in the text format, with the given value in the first position
+	// of the board
+	private static String textGame(SudokuBoard board, String first) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 9; i++) {
+			for (int j = 0; j < 9; j++)
+				text.append(j == 0 ? "" : " ").append(board.getInitialSnapshot().get(i, j));
+			text.append('\n');
+		}
+		text.append('\n');
+		for (int i = 0; i < 9; i++) {
+			for (int j = 0; j < 9; j++)
+				text.append(j == 0 ? "" : " ").append(i == 0 && j == 0 ? first : "" + board.getValue(i, j));
+			text.append('\n');
+		}
+
+		return text.toString();
+	}
+
+	private static void load(Sudoku game, String text) throws IOException {
+		Path file = Files.createTempFile("sudokiscte", ".txt");
+		try {
+			Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+			game.loadSavedGame(file.toString());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void loadsTheTextFormat() throws IOException {
+		SudokuBoard saved = new SudokuBoard(PUZZLE, 0, 1);
+		saved.randomPlay();
+		saved.randomPlay();
+
+		Sudoku game = Sudoku.headless(OTHER_PUZZLE, 0);
+		load(game, textGame(saved, "" + saved.getValue(0, 0)));
+
+		assertEquals(saved.getInitialSnapshot(), game.getBoard().getInitialSnapshot());
+		assertEquals(saved.snapshot(), game.getBoard().snapshot());
+	}
+
+	@Test
+	public void valuesOutOfRangeLeaveTheGameAsItWas() throws IOException {
+		SudokuBoard saved = new SudokuBoard(PUZZLE, 0, 1);
+		Sudoku game = Sudoku.headless(OTHER_PUZZLE, 0);
+		BoardSnapshot initial = game.getBoard().getInitialSnapshot();
+		BoardSnapshot board = game.getBoard().snapshot();
+
+		for (String value : new String[] { "10", "-1", "300" }) {
+			load(game, textGame(saved, value));
+			assertEquals(initial, game.getBoard().getInitialSnapshot());
+			assertEquals(board, game.getBoard().snapshot());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setInBoardChecksTheValue() {
+		new SudokuBoard(PUZZLE, 0, 1).setInBoard(0, 0, 10);
+	}
+}
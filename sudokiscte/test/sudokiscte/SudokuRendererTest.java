@@ -0,0 +1,64 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SudokuRendererTest {
+	// The image as a renderer that compares every cell draws it
+	private static int[] drawnWhole(SudokuBoard board) {
+		SudokuRenderer renderer = new SudokuRenderer(board.getSize());
+		renderer.flush(board);
+		return renderer.getImage().getPixels();
+	}
+
+	private static void assertFollowsTheBoard(int sectorSize) {
+		int size = sectorSize * sectorSize;
+		int[][] puzzle = new SudokuGenerator(sectorSize, new Random(size)).generate(size * size / 2).clues;
+		SudokuBoard board = new SudokuBoard(puzzle, 0, 1);
+		SudokuRenderer renderer = new SudokuRenderer(size);
+		renderer.attach(board);
+
+		// Repeated values too, so that lines, columns and sectors become invalid and
+		// valid again
+		Random random = new Random(sectorSize);
+		for (int k = 0; k < 200; k++) {
+			if (random.nextInt(4) == 0)
+				board.undo();
+			else
+				board.play(random.nextInt(size), random.nextInt(size), random.nextInt(size) + 1);
+
+			assertArrayEquals("Jogada " + k, drawnWhole(board), renderer.frame().getPixels());
+		}
+	}
+
+	@Test
+	public void redrawsWhatChangedOnEveryBoardSize() {
+		for (int sectorSize = 2; sectorSize <= 4; sectorSize++)
+			assertFollowsTheBoard(sectorSize);
+	}
+
+	@Test
+	public void redrawsOnlyThePlayedPositionWhenNothingElseChanges() {
+		SudokuBoard board = new SudokuBoard(TestPuzzles.PUZZLE, 0, 1);
+		SudokuRenderer renderer = new SudokuRenderer(9);
+		renderer.attach(board);
+		renderer.frame();
+
+		for (int i = 0; i < 9; i++)
+			for (int j = 0; j < 9; j++)
+				if (board.getValue(i, j) == 0) {
+					long candidates = board.candidates(i, j);
+					if (candidates == 0)
+						continue;
+					board.play(i, j, Long.numberOfTrailingZeros(candidates));
+					assertEquals(1, renderer.flush(board));
+					assertTrue(renderer.lastRedrawnArea()[2] == SudokuAux.cellResolution(9));
+					return;
+				}
+	}
+}
@@ -0,0 +1,188 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static sudokiscte.TestPuzzles.PUZZLE;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SudokuServerTest {
+	private static final int[][] SOLUTION = new BitmaskSolver().solve(PUZZLE);
+
+	private SessionManager sessions;
+	private SudokuServer server;
+
+	@Before
+	public void setUp() {
+		sessions = new SessionManager();
+		server = new SudokuServer(sessions, SOLUTION);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		sessions.shutdown();
+	}
+
+	private String request(String request) throws Exception {
+		return server.handle(request).get(10, TimeUnit.SECONDS);
+	}
+
+	// Reason of a failed request
+	private String failure(String request) throws Exception {
+		try {
+			fail("O pedido foi aceite: " + request(request));
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RuntimeException);
+			return e.getCause().getMessage();
+		}
+		return null;
+	}
+
+	private int[][] board(String game) throws Exception {
+		String reply = request("BOARD " + game);
+		assertTrue(reply, reply.startsWith("OK "));
+
+		int[][] board = new int[9][9];
+		for (int k = 0; k < 81; k++)
+			board[k / 9][k % 9] = reply.charAt(3 + k) - '0';
+		return board;
+	}
+
+	@Test(timeout = 30000)
+	public void playsAGameToTheEnd() throws Exception {
+		String reply = request("NEW 0.3");
+		assertTrue(reply, reply.matches("OK \\d+"));
+		String game = reply.substring(3);
+
+		int[][] initial = board(game);
+		List<int[]> blanks = new ArrayList<>();
+		for (int i = 0; i < 9; i++)
+			for (int j = 0; j < 9; j++)
+				if (initial[i][j] == 0)
+					blanks.add(new int[] { i, j });
+				else
+					assertEquals(SOLUTION[i][j], initial[i][j]);
+		assertEquals(24, blanks.size());
+
+		// A value already in the line, then undone
+		int[] first = blanks.get(0);
+		int repeated = 0;
+		for (int j = 0; repeated == 0; j++)
+			repeated = initial[first[0]][j];
+		assertEquals("INVALIDA", request("PLAY " + game + " " + first[0] + " " + first[1] + " " + repeated));
+		assertEquals(repeated, board(game)[first[0]][first[1]]);
+		assertEquals("OK", request("UNDO " + game));
+		assertEquals(0, board(game)[first[0]][first[1]]);
+
+		// Positions of the initial board cannot be played
+		for (int i = 0; i < 9; i++)
+			if (initial[i][0] != 0) {
+				assertEquals("Jogada não permitida", failure("PLAY " + game + " " + i + " 0 " + SOLUTION[i][0]));
+				break;
+			}
+
+		for (int k = 0; k < blanks.size(); k++) {
+			int[] position = blanks.get(k);
+			assertEquals(k == blanks.size() - 1 ? "FIM" : "OK", request(
+			    "PLAY " + game + " " + position[0] + " " + position[1] + " " + SOLUTION[position[0]][position[1]]));
+		}
+		assertEquals("OK -", request("HINT " + game));
+
+		assertEquals("OK", request("CLOSE " + game));
+		assertEquals("O jogo " + game + " não existe", failure("BOARD " + game));
+	}
+
+	@Test(timeout = 30000)
+	public void malformedRequestsAndUnknownGamesFail() throws Exception {
+		String game = request("NEW").substring(3);
+
+		failure("SOLVE " + game);
+		failure("PLAY " + game + " 1 2");
+		failure("PLAY " + game + " a b c");
+		failure("PLAY " + game + " 9 0 1");
+		failure("UNDO");
+		failure("BOARD 12345");
+		failure("CLOSE x");
+
+		// Over a connection, failures are ERRO lines, and the connection goes on
+		int port = server.start(0);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		    BufferedReader in = new BufferedReader(
+		        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+		        true)) {
+			out.println("PLAY " + game + " 1 2");
+			assertEquals("ERRO O pedido PLAY deve ter 4 argumentos", in.readLine());
+			out.println("BOARD 12345");
+			assertEquals("ERRO O jogo 12345 não existe", in.readLine());
+			out.println("UNDO " + game);
+			assertEquals("OK", in.readLine());
+			out.println("QUIT");
+			assertNull(in.readLine());
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void playsSentAtOnceToAGameAreMadeOneAtATime() throws Exception {
+		String game = request("NEW 0.6").substring(3);
+		int[][] initial = board(game);
+
+		// Every thread plays every blank position, over and over
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> played = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final int value = t + 1;
+				played.add(clients.submit(() -> {
+					List<CompletableFuture<String>> replies = new ArrayList<>();
+					for (int round = 0; round < 20; round++)
+						for (int i = 0; i < 9; i++)
+							for (int j = 0; j < 9; j++)
+								if (initial[i][j] == 0)
+									replies.add(server.handle("PLAY " + game + " " + i + " " + j + " " + value));
+					for (CompletableFuture<String> reply : replies)
+						assertFalse(reply.get().isEmpty());
+					return replies.size();
+				}));
+			}
+
+			int moves = 0;
+			for (Future<Integer> count : played)
+				moves += count.get();
+
+			// No move was lost, and the board is the one its history makes
+			int position = sessions.get(Long.parseLong(game)).submit(SudokuBoard::getHistoryPosition).get();
+			assertEquals(moves, position);
+			assertEquals(Boolean.TRUE, sessions.get(Long.parseLong(game)).submit(board -> {
+				SudokuBoard replayed = new SudokuBoard(board.getInitialSnapshot(), board.getInitialSnapshot());
+				for (int move : board.getHistory())
+					replayed.play(MoveJournal.line(move), MoveJournal.column(move), MoveJournal.newValue(move));
+				return replayed.snapshot().equals(board.snapshot());
+			}).get());
+		} finally {
+			clients.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+// The other solvers against BitmaskSolver, on puzzles with one solution, with
+// several and with none
+public class SudokuSolverTest {
+	private static final SudokuSolver[] SOLVERS = { new DancingLinksSolver(), new ParallelSolver() };
+
+	private static List<int[][]> puzzles() {
+		List<int[][]> puzzles = new ArrayList<>();
+		for (int sectorSize = 2; sectorSize <= 4; sectorSize++) {
+			int cells = sectorSize * sectorSize * sectorSize * sectorSize;
+			for (int seed = 0; seed < 5; seed++) {
+				SudokuGenerator generator = new SudokuGenerator(sectorSize, new Random(seed));
+				int[][] puzzle = generator.generate(cells / 2).clues;
+				puzzles.add(puzzle);
+
+				// Too few clues for a single solution
+				int[][] open = new int[puzzle.length][];
+				for (int i = 0; i < puzzle.length; i++)
+					open[i] = puzzle[i].clone();
+				for (int j = 0; j < open.length; j++)
+					open[0][j] = open[1][j] = 0;
+				puzzles.add(open);
+
+				// A value repeated in a line
+				int[][] repeated = new int[puzzle.length][];
+				for (int i = 0; i < puzzle.length; i++)
+					repeated[i] = puzzle[i].clone();
+				repeated[0][0] = repeated[0][1] = 1;
+				puzzles.add(repeated);
+			}
+		}
+
+		return puzzles;
+	}
+
+	@Test
+	public void solversAgreeWithBitmaskSolver() {
+		SudokuSolver reference = new BitmaskSolver();
+		for (int[][] puzzle : puzzles()) {
+			long solutions = reference.countSolutions(puzzle, 2);
+			int[][] solution = reference.solve(puzzle);
+
+			for (SudokuSolver solver : SOLVERS) {
+				String name = solver.getClass().getSimpleName();
+				assertEquals(name, solutions, solver.countSolutions(puzzle, 2));
+
+				// With several solutions, each solver may find a different one first
+				if (solutions == 1)
+					assertArrayEquals(name, solution, solver.solve(puzzle));
+				else if (solutions == 0)
+					assertNull(name, solver.solve(puzzle));
+			}
+		}
+	}
+
+	@Test
+	public void solversCountEverySolution() {
+		int[][] empty = new int[4][4];
+		assertEquals(288, new BitmaskSolver().countSolutions(empty, Long.MAX_VALUE));
+		for (SudokuSolver solver : SOLVERS)
+			assertEquals(288, solver.countSolutions(empty, Long.MAX_VALUE));
+	}
+}
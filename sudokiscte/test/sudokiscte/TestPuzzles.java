@@ -0,0 +1,33 @@
+package sudokiscte;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+// Puzzles and checks shared by the tests
+final class TestPuzzles {
+	// 9x9 puzzles with a single solution, the same on every run
+	static final int[][] PUZZLE = new SudokuGenerator(3, new Random(7)).generate(40).clues;
+	static final int[][] OTHER_PUZZLE = new SudokuGenerator(3, new Random(8)).generate(45).clues;
+
+	private TestPuzzles() {
+	}
+
+	// Makes the given number of valid moves on a 9x9 board, repeated values
+	// included
+	static void play(SudokuBoard board, int moves, long seed) {
+		Random random = new Random(seed);
+		for (int made = 0; made < moves;)
+			if (board.play(random.nextInt(9), random.nextInt(9), random.nextInt(9) + 1))
+				made++;
+	}
+
+	static void assertSameGame(SudokuBoard expected, SudokuBoard actual) {
+		assertEquals(expected.getInitialSnapshot(), actual.getInitialSnapshot());
+		assertEquals(expected.snapshot(), actual.snapshot());
+		assertEquals(expected.getHash(), actual.getHash());
+		assertEquals(expected.getHistoryPosition(), actual.getHistoryPosition());
+		assertArrayEquals(expected.getHistory(), actual.getHistory());
+	}
+}